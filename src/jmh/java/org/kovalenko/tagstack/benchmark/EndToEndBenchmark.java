@@ -0,0 +1,109 @@
+package org.kovalenko.tagstack.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.kovalenko.tagstack.TagstackApplication;
+import org.kovalenko.tagstack.dto.BookmarkImportItemDto;
+import org.kovalenko.tagstack.dto.BookmarkPageDto;
+import org.kovalenko.tagstack.dto.BookmarkTagLinkDto;
+import org.kovalenko.tagstack.dto.TagNodeDto;
+import org.kovalenko.tagstack.dto.TagResponseDto;
+import org.kovalenko.tagstack.service.BookmarkImportService;
+import org.kovalenko.tagstack.service.BookmarkService;
+import org.kovalenko.tagstack.service.TagService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service calls against a real PostgreSQL, configured with -Dbench.datasource.url/username/password.
+ * Migrations run on startup, the benchmark user is wiped and seeded through the bulk import on every setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EndToEndBenchmark {
+    private static final int BENCH_USER_ID = 900_000_001;
+
+    @Param({"5"})
+    private int depth;
+
+    @Param({"1000", "100000"})
+    private int bookmarkCount;
+
+    private ConfigurableApplicationContext context;
+    private BookmarkService bookmarkService;
+    private TagService tagService;
+
+    @Setup
+    public void setUp() throws Exception {
+        context = new SpringApplicationBuilder(TagstackApplication.class)
+                .properties(
+                        "spring.main.web-application-type=none",
+                        "spring.datasource.url=" + System.getProperty("bench.datasource.url"),
+                        "spring.datasource.username=" + System.getProperty("bench.datasource.username"),
+                        "spring.datasource.password=" + System.getProperty("bench.datasource.password"),
+                        "spring.jpa.properties.hibernate.show_sql=false",
+                        "spring.jpa.properties.hibernate.jdbc.batch_size=50",
+                        "spring.jpa.properties.hibernate.order_inserts=true")
+                .run();
+        bookmarkService = context.getBean(BookmarkService.class);
+        tagService = context.getBean(TagService.class);
+
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        jdbcTemplate.update("DELETE FROM bookmarks WHERE user_id = ?", BENCH_USER_ID);
+        jdbcTemplate.update("DELETE FROM tags WHERE user_id = ?", BENCH_USER_ID);
+
+        byte[] json = context.getBean(ObjectMapper.class).writeValueAsBytes(importItems(new SyntheticData(depth, 4, bookmarkCount)));
+        context.getBean(BookmarkImportService.class).importJson(new ByteArrayInputStream(json), BENCH_USER_ID);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public BookmarkPageDto firstBookmarkPage() {
+        return bookmarkService.getAll(BENCH_USER_ID, 100, null);
+    }
+
+    @Benchmark
+    public List<TagResponseDto> allTags() {
+        return tagService.getAll(BENCH_USER_ID);
+    }
+
+    /**
+     * Synthetic bookmarks as import items, every tag is given by the names along its path
+     */
+    private List<BookmarkImportItemDto> importItems(SyntheticData data) {
+        Map<Integer, TagNodeDto> tagsById = new HashMap<>();
+        data.tags.forEach(tag -> tagsById.put(tag.getId(), tag));
+        Map<Integer, List<String>> tagPaths = new HashMap<>();
+        for (BookmarkTagLinkDto link : data.links) {
+            StringJoiner path = new StringJoiner("/");
+            for (String id : tagsById.get(link.getTagId()).getPath().split("/")) {
+                if (!id.isEmpty()) {
+                    path.add(tagsById.get(Integer.valueOf(id)).getName());
+                }
+            }
+            tagPaths.computeIfAbsent(link.getBookmarkId(), id -> new ArrayList<>()).add(path.toString());
+        }
+
+        return data.bookmarks.stream()
+                .map(bookmark -> BookmarkImportItemDto.builder()
+                        .url(bookmark.getUrl())
+                        .title(bookmark.getTitle())
+                        .description(bookmark.getDescription())
+                        .tags(tagPaths.getOrDefault(bookmark.getId(), List.of()))
+                        .build())
+                .toList();
+    }
+}
@@ -0,0 +1,143 @@
+package org.kovalenko.tagstack.benchmark;
+
+import org.kovalenko.tagstack.TagstackApplication;
+import org.kovalenko.tagstack.dto.BookmarkRequestDto;
+import org.kovalenko.tagstack.dto.BookmarkResponseDto;
+import org.kovalenko.tagstack.dto.TagRequestDto;
+import org.kovalenko.tagstack.dto.TagResponseDto;
+import org.kovalenko.tagstack.metrics.RequestQueryStats;
+import org.kovalenko.tagstack.service.BookmarkService;
+import org.kovalenko.tagstack.service.TagService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * The tag ownership paths with and without the second level cache for tags, against a real PostgreSQL like
+ * {@link EndToEndBenchmark}. Besides the time per call every iteration reports the hibernate statements it ran
+ * and the calls it made as the secondary results "statements" and "calls", their ratio is the number of
+ * statements per call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EndToEndSecondLevelCacheBenchmark {
+    private static final int BENCH_USER_ID = 900_000_002;
+    private static final int DEPTH = 4;
+
+    @Param({"true", "false"})
+    private boolean secondLevelCache;
+
+    private ConfigurableApplicationContext context;
+    private BookmarkService bookmarkService;
+    private TagService tagService;
+    // a chain of tags from the root down, the bookmark is tagged with the last one
+    private final List<Integer> tagIds = new ArrayList<>();
+    private Integer bookmarkId;
+
+    /**
+     * Hibernate statements and service calls of one thread in the current iteration
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Statements {
+        public long statements;
+        public long calls;
+        private int sequence;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            statements = 0;
+            calls = 0;
+        }
+
+        <T> T count(Supplier<T> call) {
+            RequestQueryStats stats = RequestQueryStats.start();
+            try {
+                return call.get();
+            } finally {
+                statements += stats.getStatements();
+                calls++;
+                RequestQueryStats.finish();
+            }
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        List<String> properties = new ArrayList<>(List.of(
+                "spring.main.web-application-type=none",
+                "spring.datasource.url=" + System.getProperty("bench.datasource.url"),
+                "spring.datasource.username=" + System.getProperty("bench.datasource.username"),
+                "spring.datasource.password=" + System.getProperty("bench.datasource.password"),
+                "tagstack.enrichment.enabled=false",
+                "spring.jpa.properties.hibernate.show_sql=false",
+                "spring.jpa.properties.hibernate.cache.use_second_level_cache=" + secondLevelCache));
+        if (secondLevelCache) {
+            properties.addAll(List.of(
+                    "spring.jpa.properties.hibernate.cache.region.factory_class=jcache",
+                    "spring.jpa.properties.hibernate.javax.cache.provider="
+                            + "com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider",
+                    "spring.jpa.properties.hibernate.javax.cache.uri=hibernate-cache.conf",
+                    "spring.jpa.properties.hibernate.javax.cache.missing_cache_strategy=fail"));
+        }
+        context = new SpringApplicationBuilder(TagstackApplication.class)
+                .properties(properties.toArray(String[]::new))
+                .run();
+        bookmarkService = context.getBean(BookmarkService.class);
+        tagService = context.getBean(TagService.class);
+
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        jdbcTemplate.update("DELETE FROM bookmarks WHERE user_id = ?", BENCH_USER_ID);
+        jdbcTemplate.update("DELETE FROM tags WHERE user_id = ?", BENCH_USER_ID);
+
+        Integer parentId = null;
+        for (int i = 0; i < DEPTH; i++) {
+            parentId = tagService.create(new TagRequestDto("level" + i, parentId), BENCH_USER_ID).getId();
+            tagIds.add(parentId);
+        }
+        bookmarkId = bookmarkService.create(BookmarkRequestDto.builder()
+                .url("https://l2.example.com/")
+                .tagIds(Set.of(parentId))
+                .build(), BENCH_USER_ID).getId();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<BookmarkResponseDto> bookmarksByTag(Statements statements) {
+        return statements.count(() -> bookmarkService.getByTag(tagIds.get(DEPTH - 1), BENCH_USER_ID));
+    }
+
+    /**
+     * Alternates the second tag of the bookmark, so every call changes its links
+     */
+    @Benchmark
+    public BookmarkResponseDto updateBookmarkTags(Statements statements) {
+        Integer other = tagIds.get(statements.sequence++ % 2);
+        return statements.count(() -> bookmarkService.update(BookmarkRequestDto.builder()
+                .url("https://l2.example.com/")
+                .tagIds(Set.of(tagIds.get(DEPTH - 1), other))
+                .build(), bookmarkId, BENCH_USER_ID));
+    }
+
+    @Benchmark
+    public TagResponseDto createChildTag(Statements statements) {
+        String name = "child" + Thread.currentThread().threadId() + "-" + statements.sequence++;
+        return statements.count(() -> tagService.create(new TagRequestDto(name, tagIds.get(DEPTH - 1)),
+                BENCH_USER_ID));
+    }
+}
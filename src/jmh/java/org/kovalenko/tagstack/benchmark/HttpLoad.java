@@ -0,0 +1,118 @@
+package org.kovalenko.tagstack.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop HTTP load on a running server, for what the JMH benchmarks can't show: request threads, admission
+ * control and the connection pool under concurrency. Every client sends its next request as soon as the previous
+ * one is answered; answers during the warm-up are not counted.
+ * <pre>
+ *   mvn -Pjmh test-compile
+ *   java -cp target/test-classes org.kovalenko.tagstack.benchmark.HttpLoad \
+ *       http://localhost:8080 getAll|create userId clients warmupSeconds seconds
+ * </pre>
+ * getAll reads the first page of 50 bookmarks, create posts a bookmark with a new url.
+ * Throughput counts 2xx answers only, the percentiles are those of the 2xx answers.
+ */
+public final class HttpLoad {
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(60);
+
+    private HttpLoad() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length != 6) {
+            throw new IllegalArgumentException("usage: baseUrl getAll|create userId clients warmupSeconds seconds");
+        }
+        String baseUrl = args[0];
+        String path = args[1];
+        int userId = Integer.parseInt(args[2]);
+        int clients = Integer.parseInt(args[3]);
+        long warmupNanos = Duration.ofSeconds(Long.parseLong(args[4])).toNanos();
+        long measureNanos = Duration.ofSeconds(Long.parseLong(args[5])).toNanos();
+        if (!path.equals("getAll") && !path.equals("create")) {
+            throw new IllegalArgumentException("unknown path: " + path);
+        }
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(REQUEST_TIMEOUT)
+                .build();
+        AtomicLong urls = new AtomicLong();
+        long run = System.currentTimeMillis();
+        Map<Integer, AtomicLong> failures = new ConcurrentHashMap<>();
+        List<long[]> latencies = new ArrayList<>();
+
+        long start = System.nanoTime();
+        long measureFrom = start + warmupNanos;
+        long end = measureFrom + measureNanos;
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            long[][] own = {new long[1024]};
+            int[] count = {0};
+            Thread thread = Thread.ofVirtual().start(() -> {
+                while (System.nanoTime() < end) {
+                    HttpRequest request = path.equals("getAll")
+                            ? HttpRequest.newBuilder(URI.create(baseUrl + "/api/v0/bookmarks?limit=50&userId=" + userId))
+                            .timeout(REQUEST_TIMEOUT).GET().build()
+                            : HttpRequest.newBuilder(URI.create(baseUrl + "/api/v0/bookmarks?userId=" + userId))
+                            .timeout(REQUEST_TIMEOUT)
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString("{\"url\": \"https://load.example/" + run + "/"
+                                    + urls.incrementAndGet() + "\", \"title\": \"load\"}"))
+                            .build();
+                    long sent = System.nanoTime();
+                    int status;
+                    try {
+                        status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                    } catch (Exception e) {
+                        status = -1;
+                    }
+                    long answered = System.nanoTime();
+                    if (sent < measureFrom || answered > end) {
+                        continue;
+                    }
+                    if (status / 100 != 2) {
+                        failures.computeIfAbsent(status, s -> new AtomicLong()).incrementAndGet();
+                        continue;
+                    }
+                    if (count[0] == own[0].length) {
+                        own[0] = Arrays.copyOf(own[0], own[0].length * 2);
+                    }
+                    own[0][count[0]++] = answered - sent;
+                }
+                synchronized (latencies) {
+                    latencies.add(Arrays.copyOf(own[0], count[0]));
+                }
+            });
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        long[] all = latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        double seconds = measureNanos / 1e9;
+        System.out.printf("%s clients=%d ok=%d failed=%s throughput=%.1f/s p50=%.1fms p99=%.1fms max=%.1fms%n",
+                path, clients, all.length, new TreeMap<>(failures), all.length / seconds,
+                percentile(all, 0.50), percentile(all, 0.99), all.length > 0 ? all[all.length - 1] / 1e6 : 0.0);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)] / 1e6;
+    }
+}
@@ -0,0 +1,65 @@
+package org.kovalenko.tagstack.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.kovalenko.tagstack.cache.TagForestCache;
+import org.kovalenko.tagstack.dto.BookmarkPageDto;
+import org.kovalenko.tagstack.dto.TagResponseDto;
+import org.kovalenko.tagstack.repository.TagRepository;
+import org.kovalenko.tagstack.service.impl.BookmarkServiceImpl;
+import org.kovalenko.tagstack.service.impl.TagServiceImpl;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON serialization of prepared response DTOs with the object mapper configuration the application uses
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    @Param({"2", "10"})
+    private int depth;
+
+    @Param({"100", "1000"})
+    private int bookmarkCount;
+
+    private ObjectMapper objectMapper;
+    private BookmarkPageDto bookmarkPage;
+    private List<TagResponseDto> tags;
+
+    @Setup
+    public void setUp() {
+        SyntheticData data = new SyntheticData(depth, 4, bookmarkCount);
+        TagRepository tagRepository = StubRepositories.tagRepository(data);
+        TagForestCache tagForestCache = new TagForestCache(
+                tagRepository, new SimpleMeterRegistry(), 100, Duration.ofHours(1), Duration.ofHours(1));
+        bookmarkPage = new BookmarkServiceImpl(
+                StubRepositories.bookmarkRepository(data), tagRepository, null, tagForestCache,
+                new SimpleMeterRegistry(), null, event -> {
+                })
+                .getAll(SyntheticData.USER_ID, bookmarkCount, null);
+        tags = new TagServiceImpl(tagRepository, tagForestCache, event -> {
+        }, null, null).getAll(SyntheticData.USER_ID);
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    }
+
+    @Benchmark
+    public byte[] serializeBookmarkPage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(bookmarkPage);
+    }
+
+    @Benchmark
+    public byte[] serializeTags() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(tags);
+    }
+}
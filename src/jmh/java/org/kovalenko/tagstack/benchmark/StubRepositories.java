@@ -0,0 +1,36 @@
+package org.kovalenko.tagstack.benchmark;
+
+import org.kovalenko.tagstack.repository.BookmarkRepository;
+import org.kovalenko.tagstack.repository.TagRepository;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * Repositories answering from {@link SyntheticData}, so the service code runs without a database
+ */
+final class StubRepositories {
+
+    private StubRepositories() {
+    }
+
+    static BookmarkRepository bookmarkRepository(SyntheticData data) {
+        return (BookmarkRepository) Proxy.newProxyInstance(
+                BookmarkRepository.class.getClassLoader(),
+                new Class<?>[]{BookmarkRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findFirstPage" -> data.bookmarks;
+                    case "findTagLinks" -> data.links;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    static TagRepository tagRepository(SyntheticData data) {
+        return (TagRepository) Proxy.newProxyInstance(
+                TagRepository.class.getClassLoader(),
+                new Class<?>[]{TagRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findTagNodesByUserId" -> data.tags;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,67 @@
+package org.kovalenko.tagstack.benchmark;
+
+import org.kovalenko.tagstack.dto.BookmarkTagLinkDto;
+import org.kovalenko.tagstack.dto.TagNodeDto;
+import org.kovalenko.tagstack.entity.Bookmark;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic tag forests and bookmarks, the fixed seed keeps runs of different commits comparable
+ */
+final class SyntheticData {
+    static final int USER_ID = 1;
+    static final int MAX_TAGS = 20_000;
+    static final int TAGS_PER_BOOKMARK = 3;
+
+    final List<TagNodeDto> tags = new ArrayList<>();
+    final List<Bookmark> bookmarks = new ArrayList<>();
+    final List<BookmarkTagLinkDto> links = new ArrayList<>();
+
+    /**
+     * Two roots, every node gets fanOut children down to the given depth, capped at {@link #MAX_TAGS} nodes
+     */
+    SyntheticData(int depth, int fanOut, int bookmarkCount) {
+        Random random = new Random(42);
+        List<TagNodeDto> level = new ArrayList<>();
+        for (int root = 0; root < 2; root++) {
+            level.add(addTag(null));
+        }
+        for (int d = 1; d < depth && tags.size() < MAX_TAGS; d++) {
+            List<TagNodeDto> next = new ArrayList<>();
+            for (TagNodeDto parent : level) {
+                for (int i = 0; i < fanOut && tags.size() < MAX_TAGS; i++) {
+                    next.add(addTag(parent));
+                }
+            }
+            level = next;
+        }
+
+        LocalDateTime createdAt = LocalDateTime.of(2024, 1, 1, 0, 0);
+        for (int id = 1; id <= bookmarkCount; id++) {
+            bookmarks.add(Bookmark.builder()
+                    .id(id)
+                    .userId(USER_ID)
+                    .url("https://example.com/" + id)
+                    .title("bookmark " + id)
+                    .description("synthetic bookmark number " + id)
+                    .createdAt(createdAt.plusSeconds(id))
+                    .updatedAt(createdAt.plusSeconds(id))
+                    .build());
+            for (int i = 0; i < TAGS_PER_BOOKMARK; i++) {
+                links.add(new BookmarkTagLinkDto(id, tags.get(random.nextInt(tags.size())).getId()));
+            }
+        }
+    }
+
+    private TagNodeDto addTag(TagNodeDto parent) {
+        int id = tags.size() + 1;
+        String path = (parent != null ? parent.getPath() : "/") + id + "/";
+        TagNodeDto tag = new TagNodeDto(id, parent != null ? parent.getId() : null, "tag-" + id, path);
+        tags.add(tag);
+        return tag;
+    }
+}
@@ -0,0 +1,76 @@
+package org.kovalenko.tagstack.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.kovalenko.tagstack.cache.TagForest;
+import org.kovalenko.tagstack.cache.TagForestCache;
+import org.kovalenko.tagstack.dto.BookmarkPageDto;
+import org.kovalenko.tagstack.dto.TagResponseDto;
+import org.kovalenko.tagstack.repository.TagRepository;
+import org.kovalenko.tagstack.service.impl.BookmarkServiceImpl;
+import org.kovalenko.tagstack.service.impl.TagServiceImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tree algorithms behind the bookmark and tag responses:
+ * building the forest, rendering bookmark tag paths and rendering whole subtrees
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TagTreeBenchmark {
+
+    @Param({"2", "5", "10"})
+    private int depth;
+
+    @Param({"2", "10"})
+    private int fanOut;
+
+    @Param({"100", "1000"})
+    private int bookmarkCount;
+
+    private SyntheticData data;
+    private BookmarkServiceImpl bookmarkService;
+    private TagServiceImpl tagService;
+
+    @Setup
+    public void setUp() {
+        data = new SyntheticData(depth, fanOut, bookmarkCount);
+        TagRepository tagRepository = StubRepositories.tagRepository(data);
+        TagForestCache tagForestCache = new TagForestCache(
+                tagRepository, new SimpleMeterRegistry(), 100, Duration.ofHours(1), Duration.ofHours(1));
+        bookmarkService = new BookmarkServiceImpl(
+                StubRepositories.bookmarkRepository(data), tagRepository, null, tagForestCache,
+                new SimpleMeterRegistry(), null, event -> {
+        });
+        tagService = new TagServiceImpl(tagRepository, tagForestCache, event -> {
+        }, null, null);
+    }
+
+    @Benchmark
+    public TagForest buildForest() {
+        return TagForest.of(data.tags);
+    }
+
+    /**
+     * One page of bookmarks with their root-to-tag paths, the forest comes from the cache
+     */
+    @Benchmark
+    public BookmarkPageDto renderBookmarkPage() {
+        return bookmarkService.getAll(SyntheticData.USER_ID, bookmarkCount, null);
+    }
+
+    /**
+     * Every tag with its whole subtree, the forest comes from the cache
+     */
+    @Benchmark
+    public List<TagResponseDto> renderAllTags() {
+        return tagService.getAll(SyntheticData.USER_ID);
+    }
+}
@@ -0,0 +1,244 @@
+-- EXPLAIN of the per-user bookmark and tag lookups at 100M bookmarks, before V7, with the V7/V8 indexes on the
+-- unpartitioned tables, and with the V8 hash partitioning.
+--
+-- Run against an empty scratch database, never one of the application:
+--   createdb tagstack_explain && psql -d tagstack_explain -f src/jmh/sql/bookmarks_partitioning_explain.sql
+-- It needs about 40GB of disk. The tables are unlogged to keep the load short, which does not change plans or
+-- read costs. Rows are generated deterministically: 100k users with 1000 bookmarks and 50 tags each
+-- (10 roots with 4 children), every bookmark carries one tag. Columns the lookups don't read (description,
+-- search_vector, favicon_url) are left out, so the heap is narrower than the real one and the sequential scans
+-- of the before case are, if anything, optimistic.
+-- Every lookup is run twice, the second, warm run is the one to compare. Deletes are measured as the select
+-- with the same predicate, which takes the same access path.
+--
+-- Warm execution times on PostgreSQL 16, 1 vCPU, default shared_buffers (128MB):
+--                                  before V7        indexes, one table   partitioned
+--   first page of 50               18267 ms         0.083 ms             0.101 ms
+--   tags by name                   0.035 ms (*)     0.024 ms             -
+--   bookmarks of a tag             8152 ms          0.244 ms             0.239 ms
+--   bookmark by url / url_hash     19794 ms         0.033 ms             0.035 ms
+--   bookmark by id alone           -                -                    0.177 ms, one probe per partition
+--   (*) served by the V2 (user_id, path) index
+-- The indexes make the difference; hash partitioning does not speed up any of the lookups. What it buys is
+-- per-partition upkeep: the largest bookmark index of a partition is 249MB against 3868MB for the one table,
+-- so vacuum, reindex and a rebuild like V8's step through 16 small pieces. Lookups by id alone get slower.
+
+set maintenance_work_mem = '1GB';
+
+-- == load
+
+create unlogged table tags (
+    id        int primary key,
+    user_id   int not null,
+    name      varchar not null,
+    parent_id int,
+    path      varchar
+);
+
+insert into tags (id, user_id, name, parent_id, path)
+select g + 1,
+       g / 50 + 1,
+       'tag' || g % 50,
+       case when g % 50 >= 10 then g / 50 * 50 + g % 10 + 1 end,
+       case when g % 50 >= 10 then '/' || (g / 50 * 50 + g % 10 + 1) || '/' || (g + 1) || '/'
+            else '/' || (g + 1) || '/' end
+from generate_series(0, 4999999) g;
+
+-- V2
+create index idx_tags_user_id_path on tags (user_id, path varchar_pattern_ops);
+
+-- V1 layout, url_hash filled already so the heap stays the same for the indexed case
+create unlogged table bookmarks (
+    id          int primary key,
+    user_id     int not null,
+    url         text not null,
+    url_hash    bytea not null,
+    title       text,
+    created_at  timestamp,
+    updated_at  timestamp
+);
+
+insert into bookmarks (id, user_id, url, url_hash, title, created_at, updated_at)
+select g + 1,
+       g % 100000 + 1,
+       'https://example.com/' || g || '/' || md5(g::text),
+       sha256(convert_to('https://example.com/' || g || '/' || md5(g::text), 'UTF8')),
+       'bookmark ' || g,
+       timestamp '2015-01-01' + g * interval '3 seconds',
+       timestamp '2015-01-01' + g * interval '3 seconds'
+from generate_series(0, 99999999) g;
+
+create unlogged table bookmark_tags (
+    bookmark_id int not null,
+    tag_id      int not null,
+    primary key (bookmark_id, tag_id)
+);
+
+insert into bookmark_tags (bookmark_id, tag_id)
+select g + 1, (g % 100000) * 50 + (g / 100000) % 50 + 1
+from generate_series(0, 99999999) g;
+
+vacuum analyze tags;
+vacuum analyze bookmarks;
+vacuum analyze bookmark_tags;
+
+-- == before: V1, primary keys only
+
+-- findFirstPage of user 4242
+explain (analyze, buffers)
+select * from bookmarks where user_id = 4242 order by created_at, id limit 50;
+explain (analyze, buffers)
+select * from bookmarks where user_id = 4242 order by created_at, id limit 50;
+
+-- findAllByNameAndUserId
+explain (analyze, buffers)
+select * from tags where user_id = 4242 and name = 'tag7';
+explain (analyze, buffers)
+select * from tags where user_id = 4242 and name = 'tag7';
+
+-- findAllByTagIdAndUserId, tag7 of user 4242
+explain (analyze, buffers)
+select b.* from bookmarks b join bookmark_tags bt on bt.bookmark_id = b.id
+where b.user_id = 4242 and bt.tag_id = 212058;
+explain (analyze, buffers)
+select b.* from bookmarks b join bookmark_tags bt on bt.bookmark_id = b.id
+where b.user_id = 4242 and bt.tag_id = 212058;
+
+-- deleteByUrlAndUserId, by url
+explain (analyze, buffers)
+select id from bookmarks where user_id = 4242 and url = 'https://example.com/50004241/' || md5('50004241');
+explain (analyze, buffers)
+select id from bookmarks where user_id = 4242 and url = 'https://example.com/50004241/' || md5('50004241');
+
+-- == indexes: those of V7 and V8 and the unique url_hash of V9, on the unpartitioned tables
+
+create index idx_tags_user_id_name on tags (user_id, name);
+create index idx_tags_parent_id on tags (parent_id);
+create index idx_bookmarks_user_id_created_at on bookmarks (user_id, created_at, id);
+create index idx_bookmark_tags_tag_id on bookmark_tags (tag_id, bookmark_id);
+alter table bookmarks add constraint uq_bookmarks_user_id_url_hash unique (user_id, url_hash);
+analyze tags;
+analyze bookmarks;
+analyze bookmark_tags;
+
+select relname, pg_size_pretty(pg_relation_size(oid)) from pg_class
+where relname in ('bookmarks', 'bookmark_tags', 'bookmarks_pkey', 'bookmark_tags_pkey',
+                  'idx_bookmarks_user_id_created_at', 'idx_bookmark_tags_tag_id', 'uq_bookmarks_user_id_url_hash')
+order by relname;
+
+-- == after indexes, unpartitioned
+
+explain (analyze, buffers)
+select * from bookmarks where user_id = 4242 order by created_at, id limit 50;
+explain (analyze, buffers)
+select * from bookmarks where user_id = 4242 order by created_at, id limit 50;
+
+explain (analyze, buffers)
+select * from tags where user_id = 4242 and name = 'tag7';
+explain (analyze, buffers)
+select * from tags where user_id = 4242 and name = 'tag7';
+
+explain (analyze, buffers)
+select b.* from bookmarks b join bookmark_tags bt on bt.bookmark_id = b.id
+where b.user_id = 4242 and bt.tag_id = 212058;
+explain (analyze, buffers)
+select b.* from bookmarks b join bookmark_tags bt on bt.bookmark_id = b.id
+where b.user_id = 4242 and bt.tag_id = 212058;
+
+-- deleteAllByUrlHashAndUserId
+explain (analyze, buffers)
+select id from bookmarks where user_id = 4242
+and url_hash = sha256(convert_to('https://example.com/50004241/' || md5('50004241'), 'UTF8'));
+explain (analyze, buffers)
+select id from bookmarks where user_id = 4242
+and url_hash = sha256(convert_to('https://example.com/50004241/' || md5('50004241'), 'UTF8'));
+
+-- == partitioned: the V8 layout with the same rows
+
+drop table bookmark_tags;
+drop table bookmarks;
+
+create unlogged table bookmarks (
+    id          int not null,
+    user_id     int not null,
+    url         text not null,
+    url_hash    bytea not null,
+    title       text,
+    created_at  timestamp,
+    updated_at  timestamp,
+    constraint bookmarks_pkey primary key (user_id, id)
+) partition by hash (user_id);
+
+create unlogged table bookmark_tags (
+    user_id     int not null,
+    bookmark_id int not null,
+    tag_id      int not null,
+    constraint bookmark_tags_pkey primary key (user_id, bookmark_id, tag_id)
+) partition by hash (user_id);
+
+do
+$$
+begin
+    for remainder in 0..15 loop
+        execute format('create unlogged table bookmarks_p%s partition of bookmarks '
+                       'for values with (modulus 16, remainder %s)', remainder, remainder);
+        execute format('create unlogged table bookmark_tags_p%s partition of bookmark_tags '
+                       'for values with (modulus 16, remainder %s)', remainder, remainder);
+    end loop;
+end
+$$;
+
+insert into bookmarks (id, user_id, url, url_hash, title, created_at, updated_at)
+select g + 1,
+       g % 100000 + 1,
+       'https://example.com/' || g || '/' || md5(g::text),
+       sha256(convert_to('https://example.com/' || g || '/' || md5(g::text), 'UTF8')),
+       'bookmark ' || g,
+       timestamp '2015-01-01' + g * interval '3 seconds',
+       timestamp '2015-01-01' + g * interval '3 seconds'
+from generate_series(0, 99999999) g;
+
+insert into bookmark_tags (user_id, bookmark_id, tag_id)
+select g % 100000 + 1, g + 1, (g % 100000) * 50 + (g / 100000) % 50 + 1
+from generate_series(0, 99999999) g;
+
+create index idx_bookmarks_user_id_created_at on bookmarks (user_id, created_at, id);
+create index idx_bookmarks_id on bookmarks (id);
+create index idx_bookmark_tags_tag_id on bookmark_tags (tag_id, bookmark_id);
+alter table bookmarks add constraint uq_bookmarks_user_id_url_hash unique (user_id, url_hash);
+
+vacuum analyze bookmarks;
+vacuum analyze bookmark_tags;
+
+select relname, pg_size_pretty(pg_relation_size(oid)) from pg_class
+where relname in ('bookmarks_p0', 'bookmark_tags_p0', 'bookmarks_p0_pkey', 'bookmark_tags_p0_pkey',
+                  'bookmarks_p0_user_id_created_at_id_idx', 'bookmark_tags_p0_tag_id_bookmark_id_idx',
+                  'bookmarks_p0_user_id_url_hash_key')
+order by relname;
+
+-- == after partitioning
+
+explain (analyze, buffers)
+select * from bookmarks where user_id = 4242 order by created_at, id limit 50;
+explain (analyze, buffers)
+select * from bookmarks where user_id = 4242 order by created_at, id limit 50;
+
+explain (analyze, buffers)
+select b.* from bookmarks b join bookmark_tags bt on bt.user_id = b.user_id and bt.bookmark_id = b.id
+where b.user_id = 4242 and bt.tag_id = 212058;
+explain (analyze, buffers)
+select b.* from bookmarks b join bookmark_tags bt on bt.user_id = b.user_id and bt.bookmark_id = b.id
+where b.user_id = 4242 and bt.tag_id = 212058;
+
+explain (analyze, buffers)
+select id from bookmarks where user_id = 4242
+and url_hash = sha256(convert_to('https://example.com/50004241/' || md5('50004241'), 'UTF8'));
+explain (analyze, buffers)
+select id from bookmarks where user_id = 4242
+and url_hash = sha256(convert_to('https://example.com/50004241/' || md5('50004241'), 'UTF8'));
+
+-- hibernate's update and delete of an entity by id alone, the one lookup without the partition key
+explain (analyze, buffers)
+select id from bookmarks where id = 50004242;
+explain (analyze, buffers)
+select id from bookmarks where id = 50004242;
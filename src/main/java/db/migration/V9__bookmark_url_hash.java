@@ -0,0 +1,155 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Adds bookmarks.url_hash, the SHA-256 of the canonical url, and makes (user_id, url_hash) unique; a hash has
+ * a fixed size, unlike a url it always fits a btree entry.
+ * The hash is computed in java, so this is a java migration; bookmarks that become duplicates are merged
+ * the same way as in V7.
+ * <p>
+ * The canonical form is a copy of UrlNormalizer as it was when this migration was written, a migration has to
+ * produce the same schema and data whenever it runs; later changes of the rules come with migrations of their own.
+ */
+public class V9__bookmark_url_hash extends BaseJavaMigration {
+    private static final int BATCH_SIZE = 1000;
+    private static final Set<String> TRACKING_PARAMETERS = Set.of(
+            "fbclid", "gclid", "dclid", "msclkid", "yclid", "igshid", "mc_cid", "mc_eid", "_ga", "ref_src");
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("alter table bookmarks add column url_hash bytea");
+            // url_hash is not part of any response, the backfill stays out of change_log
+            statement.execute("alter table bookmarks disable trigger bookmarks_change_log");
+        }
+
+        try (PreparedStatement select = connection.prepareStatement("select user_id, id, url from bookmarks");
+             PreparedStatement update = connection.prepareStatement(
+                     "update bookmarks set url_hash = ? where user_id = ? and id = ?")) {
+            // a fetch size streams the rows through a cursor, flyway runs the migration inside a transaction
+            select.setFetchSize(BATCH_SIZE);
+            try (ResultSet rows = select.executeQuery()) {
+                int batched = 0;
+                while (rows.next()) {
+                    update.setBytes(1, hash(rows.getString(3)));
+                    update.setInt(2, rows.getInt(1));
+                    update.setInt(3, rows.getInt(2));
+                    update.addBatch();
+                    if (++batched == BATCH_SIZE) {
+                        update.executeBatch();
+                        batched = 0;
+                    }
+                }
+                if (batched > 0) {
+                    update.executeBatch();
+                }
+            }
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("alter table bookmarks enable trigger bookmarks_change_log");
+
+            // merged bookmarks are deleted through the logged table and their users' versions move on
+            statement.execute("create temporary table bookmark_duplicates on commit drop as " +
+                    "select user_id, id, keep_id " +
+                    "from (select user_id, id, min(id) over (partition by user_id, url_hash) as keep_id " +
+                    "from bookmarks) grouped " +
+                    "where id <> keep_id");
+            statement.execute("insert into bookmark_tags (user_id, bookmark_id, tag_id) " +
+                    "select d.user_id, d.keep_id, bt.tag_id " +
+                    "from bookmark_tags bt " +
+                    "join bookmark_duplicates d on d.user_id = bt.user_id and d.id = bt.bookmark_id " +
+                    "on conflict do nothing");
+            statement.execute("delete from bookmarks b using bookmark_duplicates d " +
+                    "where b.user_id = d.user_id and b.id = d.id");
+            statement.execute("insert into user_versions (user_id, version, updated_at) " +
+                    "select distinct user_id, 1, now() from bookmark_duplicates " +
+                    "on conflict (user_id) do update set version = user_versions.version + 1, updated_at = now()");
+
+            statement.execute("alter table bookmarks alter column url_hash set not null");
+            statement.execute("alter table bookmarks add constraint uq_bookmarks_user_id_url_hash " +
+                    "unique (user_id, url_hash)");
+        }
+    }
+
+    private static byte[] hash(String url) throws NoSuchAlgorithmException {
+        return MessageDigest.getInstance("SHA-256").digest(normalize(url).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String normalize(String url) {
+        String trimmed = url.trim();
+        URI uri;
+        try {
+            uri = new URI(trimmed).normalize();
+        } catch (URISyntaxException e) {
+            return trimmed;
+        }
+
+        String scheme = uri.getScheme() != null ? uri.getScheme().toLowerCase(Locale.ROOT) : null;
+        if (uri.isOpaque() || uri.getHost() == null || !("http".equals(scheme) || "https".equals(scheme))) {
+            return trimmed;
+        }
+
+        StringBuilder result = new StringBuilder("https://");
+        if (uri.getRawUserInfo() != null) {
+            result.append(uri.getRawUserInfo()).append('@');
+        }
+        String host = uri.getHost().toLowerCase(Locale.ROOT);
+        if (host.endsWith(".")) {
+            host = host.substring(0, host.length() - 1);
+        }
+        result.append(host.startsWith("www.") ? host.substring(4) : host);
+        int defaultPort = "http".equals(scheme) ? 80 : 443;
+        if (uri.getPort() != -1 && uri.getPort() != defaultPort) {
+            result.append(':').append(uri.getPort());
+        }
+
+        String path = uri.getRawPath() != null ? uri.getRawPath() : "";
+        int end = path.length();
+        while (end > 0 && path.charAt(end - 1) == '/') {
+            end--;
+        }
+        result.append(path, 0, end);
+
+        if (uri.getRawQuery() != null) {
+            List<String> parameters = new ArrayList<>();
+            for (String parameter : uri.getRawQuery().split("&")) {
+                if (!parameter.isEmpty() && !isTracking(parameter)) {
+                    parameters.add(parameter);
+                }
+            }
+            if (!parameters.isEmpty()) {
+                parameters.sort(null);
+                result.append('?').append(String.join("&", parameters));
+            }
+        }
+
+        String fragment = uri.getRawFragment();
+        if (fragment != null && (fragment.startsWith("!") || fragment.startsWith("/"))) {
+            result.append('#').append(fragment);
+        }
+        return result.toString();
+    }
+
+    private static boolean isTracking(String parameter) {
+        int separator = parameter.indexOf('=');
+        String name = (separator >= 0 ? parameter.substring(0, separator) : parameter).toLowerCase(Locale.ROOT);
+        return name.startsWith("utm_") || TRACKING_PARAMETERS.contains(name);
+    }
+}
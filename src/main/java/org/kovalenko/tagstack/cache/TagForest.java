@@ -0,0 +1,249 @@
+package org.kovalenko.tagstack.cache;
+
+import org.kovalenko.tagstack.dto.TagNodeDto;
+import org.kovalenko.tagstack.dto.TagResponseDto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of one user's tag forest.
+ * Nodes are addressed by index, ids are sorted so an id is resolved with a binary search,
+ * links between nodes are indexes into the parallel arrays (-1 when absent).
+ */
+public final class TagForest {
+    public static final int NONE = -1;
+
+    private final int[] ids;
+    private final int[] parents;
+    private final int[] firstChildren;
+    private final int[] nextSiblings;
+    private final String[] names;
+    private final int[] depths;
+    // node indexes ordered by (name, id), the prefix index of suggestions
+    private final int[] byName;
+
+    private TagForest(int[] ids, int[] parents, int[] firstChildren, int[] nextSiblings, String[] names, int[] depths) {
+        this.ids = ids;
+        this.parents = parents;
+        this.firstChildren = firstChildren;
+        this.nextSiblings = nextSiblings;
+        this.names = names;
+        this.depths = depths;
+        this.byName = byName(names);
+    }
+
+    public static TagForest of(List<TagNodeDto> nodes) {
+        List<TagNodeDto> sorted = new ArrayList<>(nodes);
+        sorted.sort(Comparator.comparing(TagNodeDto::getId));
+
+        int size = sorted.size();
+        int[] ids = new int[size];
+        String[] names = new String[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = sorted.get(i).getId();
+            names[i] = sorted.get(i).getName().intern();
+        }
+
+        int[] parents = new int[size];
+        int[] firstChildren = new int[size];
+        int[] nextSiblings = new int[size];
+        Arrays.fill(firstChildren, NONE);
+        Arrays.fill(nextSiblings, NONE);
+        // walk backwards so that prepending keeps the children in ascending id order
+        for (int i = size - 1; i >= 0; i--) {
+            Integer parentId = sorted.get(i).getParentId();
+            int parent = parentId != null ? Arrays.binarySearch(ids, parentId) : NONE;
+            parents[i] = parent >= 0 ? parent : NONE;
+            if (parents[i] != NONE) {
+                nextSiblings[i] = firstChildren[parents[i]];
+                firstChildren[parents[i]] = i;
+            }
+        }
+
+        return new TagForest(ids, parents, firstChildren, nextSiblings, names, depths(parents));
+    }
+
+    /**
+     * Copy with the given tags inserted or replaced and the given subtrees removed, built without the database.
+     * Applying the same change twice gives the same forest, so it is safe on a forest that already contains it.
+     */
+    public TagForest with(Collection<TagNodeDto> upserted, Collection<Integer> removedSubtrees) {
+        Set<Integer> removed = new HashSet<>(removedSubtrees);
+        Map<Integer, TagNodeDto> nodes = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            if (!isInSubtreeOf(i, removed)) {
+                int parent = parents[i];
+                nodes.put(ids[i], new TagNodeDto(ids[i], parent != NONE ? ids[parent] : null, names[i], null));
+            }
+        }
+        for (TagNodeDto node : upserted) {
+            nodes.put(node.getId(), node);
+        }
+        return of(new ArrayList<>(nodes.values()));
+    }
+
+    private boolean isInSubtreeOf(int index, Set<Integer> subtreeRoots) {
+        int current = index;
+        for (int steps = 0; current != NONE && steps <= ids.length; steps++) {
+            if (subtreeRoots.contains(ids[current])) {
+                return true;
+            }
+            current = parents[current];
+        }
+        return false;
+    }
+
+    private static int[] byName(String[] names) {
+        Integer[] order = new Integer[names.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        // ties keep the index order, which is the id order
+        Arrays.sort(order, Comparator.comparing(i -> names[i]));
+        return Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Depth of every node, roots are 0; a stored cycle is cut where the walk meets itself
+     */
+    private static int[] depths(int[] parents) {
+        int size = parents.length;
+        int onChain = -2;
+        int[] depths = new int[size];
+        Arrays.fill(depths, NONE);
+        int[] chain = new int[size];
+        for (int i = 0; i < size; i++) {
+            int length = 0;
+            int node = i;
+            while (node != NONE && depths[node] == NONE) {
+                chain[length++] = node;
+                depths[node] = onChain;
+                node = parents[node];
+            }
+            int depth = node != NONE && depths[node] >= 0 ? depths[node] + 1 : 0;
+            for (int j = length - 1; j >= 0; j--) {
+                depths[chain[j]] = depth++;
+            }
+        }
+        return depths;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Index of the tag with the given id or {@link #NONE}
+     */
+    public int indexOf(Integer id) {
+        if (id == null) {
+            return NONE;
+        }
+        int index = Arrays.binarySearch(ids, id);
+        return index >= 0 ? index : NONE;
+    }
+
+    public int id(int index) {
+        return ids[index];
+    }
+
+    public int parent(int index) {
+        return parents[index];
+    }
+
+    public String name(int index) {
+        return names[index];
+    }
+
+    /**
+     * Number of ancestors of the tag
+     */
+    public int depth(int index) {
+        return depths[index];
+    }
+
+    /**
+     * Indexes of the tags whose name starts with the prefix, in name order; a binary search for the first match
+     * and a scan over the matches
+     */
+    public int[] withNamePrefix(String prefix) {
+        int low = 0;
+        int high = byName.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (names[byName[middle]].compareTo(prefix) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        int end = low;
+        while (end < byName.length && names[byName[end]].startsWith(prefix)) {
+            end++;
+        }
+        return Arrays.copyOfRange(byName, low, end);
+    }
+
+    /**
+     * Finds the root by following parent links, bounded by the size in case the stored tree has a cycle
+     */
+    public int root(int index) {
+        int current = index;
+        for (int steps = 0; parents[current] != NONE && steps < ids.length; steps++) {
+            current = parents[current];
+        }
+        return current;
+    }
+
+    /**
+     * The tag with its whole subtree
+     */
+    public TagResponseDto toResponseDto(int index) {
+        return toResponseDto(index, 0);
+    }
+
+    private TagResponseDto toResponseDto(int index, int depth) {
+        List<TagResponseDto> children = new ArrayList<>();
+        if (depth < ids.length) {
+            for (int child = firstChildren[index]; child != NONE; child = nextSiblings[child]) {
+                children.add(toResponseDto(child, depth + 1));
+            }
+        }
+        return TagResponseDto.builder()
+                .id(ids[index])
+                .name(names[index])
+                .children(children)
+                .build();
+    }
+
+    /**
+     * Chain from the root down to the tag, every level has exactly the one child that leads to the tag
+     */
+    public TagResponseDto pathTo(int index) {
+        TagResponseDto current = TagResponseDto.builder()
+                .id(ids[index])
+                .name(names[index])
+                .children(new ArrayList<>())
+                .build();
+        int node = index;
+        for (int steps = 0; parents[node] != NONE && steps < ids.length; steps++) {
+            node = parents[node];
+            List<TagResponseDto> children = new ArrayList<>();
+            children.add(current);
+            current = TagResponseDto.builder()
+                    .id(ids[node])
+                    .name(names[node])
+                    .children(children)
+                    .build();
+        }
+        return current;
+    }
+}
@@ -0,0 +1,67 @@
+package org.kovalenko.tagstack.cache;
+
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.kovalenko.tagstack.event.TagsChangedEvent;
+import org.kovalenko.tagstack.repository.TagRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+
+/**
+ * Bounded per-user cache of tag forests, evicted by size and idle time.
+ * Tag writes are applied to the cached forest in memory, a forest older than refresh-after-write is reloaded
+ * in the background on its next read, which bounds the effect of events applied out of order.
+ * Hit, miss and eviction counters are published as cache.* meters with cache=tagForest.
+ */
+@Component
+public class TagForestCache {
+    private final LoadingCache<Integer, TagForest> cache;
+
+    public TagForestCache(TagRepository tagRepository,
+                          MeterRegistry meterRegistry,
+                          @Value("${tagstack.cache.tag-forest.maximum-size:10000}") long maximumSize,
+                          @Value("${tagstack.cache.tag-forest.expire-after-access:30m}") Duration expireAfterAccess,
+                          @Value("${tagstack.cache.tag-forest.refresh-after-write:10m}") Duration refreshAfterWrite) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(expireAfterAccess)
+                .refreshAfterWrite(refreshAfterWrite)
+                .recordStats()
+                .build(userId -> TagForest.of(tagRepository.findTagNodesByUserId(userId)));
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "tagForest");
+    }
+
+    public TagForest get(Integer userId) {
+        return cache.get(userId);
+    }
+
+    public void invalidate(Integer userId) {
+        cache.invalidate(userId);
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * Runs after commit, so a concurrent reader can't reload the forest from uncommitted state.
+     * A known change is applied to the cached forest, a forest loaded before the commit gets it applied
+     * and one loaded after already has it; an unknown change invalidates.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onTagsChanged(TagsChangedEvent event) {
+        if (event.isDelta()) {
+            cache.asMap().computeIfPresent(event.userId(),
+                    (userId, forest) -> forest.with(event.upserted(), event.removedSubtrees()));
+        } else {
+            invalidate(event.userId());
+        }
+    }
+}
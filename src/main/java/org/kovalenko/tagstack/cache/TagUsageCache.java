@@ -0,0 +1,49 @@
+package org.kovalenko.tagstack.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.kovalenko.tagstack.repository.TagRepository;
+import org.kovalenko.tagstack.repository.TagUsageView;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bounded per-user cache of bookmark counts by tag id, the ranking of tag suggestions.
+ * Counts are allowed to lag behind bookmark writes: an entry older than refresh-after-write is reloaded
+ * in the background on its next read while the old counts are still served.
+ * Published as cache.* meters with cache=tagUsage.
+ */
+@Component
+public class TagUsageCache {
+    private final LoadingCache<Integer, Map<Integer, Long>> cache;
+
+    public TagUsageCache(TagRepository tagRepository,
+                         MeterRegistry meterRegistry,
+                         @Value("${tagstack.cache.tag-usage.maximum-size:10000}") long maximumSize,
+                         @Value("${tagstack.cache.tag-usage.expire-after-access:30m}") Duration expireAfterAccess,
+                         @Value("${tagstack.cache.tag-usage.refresh-after-write:1m}") Duration refreshAfterWrite) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(expireAfterAccess)
+                .refreshAfterWrite(refreshAfterWrite)
+                .recordStats()
+                .build(userId -> {
+                    Map<Integer, Long> usages = new HashMap<>();
+                    for (TagUsageView usage : tagRepository.countUsagesByTag(userId)) {
+                        usages.put(usage.getTagId(), usage.getUsageCount());
+                    }
+                    return Map.copyOf(usages);
+                });
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "tagUsage");
+    }
+
+    public Map<Integer, Long> get(Integer userId) {
+        return cache.get(userId);
+    }
+}
@@ -1,13 +1,28 @@
 package org.kovalenko.tagstack.controller.rest;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.kovalenko.tagstack.dto.BookmarkCompactPageDto;
+import org.kovalenko.tagstack.dto.BookmarkDeleteResultDto;
+import org.kovalenko.tagstack.dto.BookmarkImportResultDto;
+import org.kovalenko.tagstack.dto.BookmarkPageDto;
 import org.kovalenko.tagstack.dto.BookmarkRequestDto;
 import org.kovalenko.tagstack.dto.BookmarkResponseDto;
+import org.kovalenko.tagstack.dto.BookmarkTagQueryDto;
+import org.kovalenko.tagstack.dto.UserVersionDto;
+import org.kovalenko.tagstack.service.BookmarkImportService;
 import org.kovalenko.tagstack.service.BookmarkService;
+import org.kovalenko.tagstack.service.UserVersionService;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
@@ -15,11 +30,86 @@ import java.util.List;
 @RequiredArgsConstructor
 public class BookmarkController {
     private final BookmarkService bookmarkService;
+    private final BookmarkImportService bookmarkImportService;
+    private final ObjectMapper objectMapper;
+    private final UserVersionService userVersionService;
 
     @GetMapping
-    public ResponseEntity<List<BookmarkResponseDto>> getAllBookmarks(@RequestParam Integer userId) {
+    public ResponseEntity<BookmarkPageDto> getAllBookmarks(
+            @RequestParam Integer userId,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String after,
+            WebRequest request) {
+        return page(userId, limit, after, request, "json");
+    }
+
+    /**
+     * The same pages in Smile, written by the Smile converter; the variant keeps its ETag apart from the JSON one
+     */
+    @GetMapping(produces = StreamingResponses.SMILE_VALUE)
+    public ResponseEntity<BookmarkPageDto> getAllBookmarksSmile(
+            @RequestParam Integer userId,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String after,
+            WebRequest request) {
+        return page(userId, limit, after, request, "smile");
+    }
+
+    private ResponseEntity<BookmarkPageDto> page(Integer userId, Integer limit, String after, WebRequest request,
+                                                 String variant) {
+        try {
+            UserVersionDto version = userVersionService.get(userId);
+            if (ConditionalRequests.notModified(request, version, variant)) {
+                return null;
+            }
+            return ConditionalRequests.ok(version, variant).body(bookmarkService.getAll(userId, limit, after));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Same pages as getAllBookmarks in the compact shape, fields selects the bookmark fields
+     */
+    @GetMapping("/compact")
+    public ResponseEntity<BookmarkCompactPageDto> getAllBookmarksCompact(
+            @RequestParam Integer userId,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) String fields,
+            WebRequest request) {
         try {
-            return ResponseEntity.ok(bookmarkService.getAll(userId));
+            UserVersionDto version = userVersionService.get(userId);
+            if (ConditionalRequests.notModified(request, version, "compact")) {
+                return null;
+            }
+            return ConditionalRequests.ok(version, "compact")
+                    .body(bookmarkService.getAllCompact(userId, limit, after, fields));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllBookmarks(@RequestParam Integer userId, WebRequest request) {
+        UserVersionDto version = userVersionService.get(userId);
+        if (ConditionalRequests.notModified(request, version, "ndjson")) {
+            return null;
+        }
+        return ConditionalRequests.okStreamed()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(StreamingResponses.<BookmarkResponseDto>lines(objectMapper,
+                        chunks -> bookmarkService.streamAll(userId, chunks)));
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<List<BookmarkResponseDto>> searchBookmarks(
+            @RequestParam String q,
+            @RequestParam Integer userId,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) Integer offset) {
+        try {
+            return ResponseEntity.ok(bookmarkService.search(q, userId, limit, offset));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().build();
         }
@@ -69,6 +159,19 @@ public class BookmarkController {
         }
     }
 
+    @GetMapping("/search/tags")
+    public ResponseEntity<BookmarkPageDto> getBookmarksByTags(
+            @ModelAttribute BookmarkTagQueryDto query,
+            @RequestParam Integer userId,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String after) {
+        try {
+            return ResponseEntity.ok(bookmarkService.getByTags(query, userId, limit, after));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @PostMapping
     public ResponseEntity<BookmarkResponseDto> createBookmark(
             @RequestBody BookmarkRequestDto bookmarkRequest,
@@ -81,6 +184,28 @@ public class BookmarkController {
         }
     }
 
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BookmarkImportResultDto> importBookmarksJson(
+            InputStream body,
+            @RequestParam Integer userId) {
+        try {
+            return ResponseEntity.ok(bookmarkImportService.importJson(body, userId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @PostMapping(value = "/import", consumes = MediaType.TEXT_HTML_VALUE)
+    public ResponseEntity<BookmarkImportResultDto> importBookmarksNetscape(
+            InputStream body,
+            @RequestParam Integer userId) {
+        try {
+            return ResponseEntity.ok(bookmarkImportService.importNetscape(body, userId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<BookmarkResponseDto> updateBookmark(
             @PathVariable Integer id,
@@ -117,4 +242,40 @@ public class BookmarkController {
             return ResponseEntity.badRequest().build();
         }
     }
-}
\ No newline at end of file
+
+    @DeleteMapping("/batch")
+    public ResponseEntity<BookmarkDeleteResultDto> deleteBookmarksByIds(
+            @RequestParam List<Integer> ids,
+            @RequestParam Integer userId) {
+        try {
+            return ResponseEntity.ok(new BookmarkDeleteResultDto(bookmarkService.deleteByIds(ids, userId)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @DeleteMapping("/search/tag/{tagId}")
+    public ResponseEntity<BookmarkDeleteResultDto> deleteBookmarksByTag(
+            @PathVariable Integer tagId,
+            @RequestParam(defaultValue = "false") boolean includeDescendants,
+            @RequestParam Integer userId) {
+        try {
+            return ResponseEntity.ok(new BookmarkDeleteResultDto(
+                    bookmarkService.deleteByTag(tagId, includeDescendants, userId)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @DeleteMapping("/created")
+    public ResponseEntity<BookmarkDeleteResultDto> deleteBookmarksByCreatedAt(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam Integer userId) {
+        try {
+            return ResponseEntity.ok(new BookmarkDeleteResultDto(bookmarkService.deleteByCreatedAt(from, to, userId)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+}
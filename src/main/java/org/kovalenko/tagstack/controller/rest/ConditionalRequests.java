@@ -0,0 +1,54 @@
+package org.kovalenko.tagstack.controller.rest;
+
+import org.kovalenko.tagstack.dto.UserVersionDto;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+
+/**
+ * Validators of per-user collections derived from the user's version.
+ * The version is read before the data, so a concurrent write can only make the ETag older than the body,
+ * which costs the client one extra full response and never serves stale data as fresh.
+ */
+final class ConditionalRequests {
+
+    private ConditionalRequests() {
+    }
+
+    /**
+     * Weak ETag, gzip makes the bytes differ per content coding and tomcat never compresses a response
+     * with a strong one; the variant keeps representations of the same url (json, ndjson) apart
+     */
+    static String eTag(UserVersionDto version, String variant) {
+        return "W/\"" + version.getVersion() + "-" + variant + "\"";
+    }
+
+    /**
+     * Evaluates If-None-Match / If-Modified-Since, on a match the response is already a 304 with the validators
+     */
+    static boolean notModified(WebRequest request, UserVersionDto version, String variant) {
+        return request.checkNotModified(eTag(version, variant), lastModified(version));
+    }
+
+    static ResponseEntity.BodyBuilder ok(UserVersionDto version, String variant) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .eTag(eTag(version, variant))
+                .cacheControl(CacheControl.noCache().cachePrivate());
+        if (version.getUpdatedAt() != null) {
+            builder.lastModified(version.getUpdatedAt());
+        }
+        return builder;
+    }
+
+    /**
+     * For streamed bodies, whose entity headers are added to the servlet response a second time
+     * instead of being merged; notModified already put the validators there
+     */
+    static ResponseEntity.BodyBuilder okStreamed() {
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache().cachePrivate());
+    }
+
+    private static long lastModified(UserVersionDto version) {
+        return version.getUpdatedAt() != null ? version.getUpdatedAt().toEpochMilli() : -1;
+    }
+}
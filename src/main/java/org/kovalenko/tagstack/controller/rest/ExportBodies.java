@@ -0,0 +1,379 @@
+package org.kovalenko.tagstack.controller.rest;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.kovalenko.tagstack.cache.TagForest;
+import org.kovalenko.tagstack.dto.BookmarkExportDto;
+import org.kovalenko.tagstack.service.ExportService.ExportSink;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Export files written while the export is read, every chunk is flushed so memory stays at one chunk.
+ * CSV and HTML carry the tags of a bookmark as paths of names joined by '/' and separated by ',', the form the
+ * Netscape import reads back; a '/' or ',' inside a name becomes a space. CSV values starting like a formula
+ * are prefixed with a quote.
+ * <p>
+ * A failed export is not completed: the gzip trailer and the closing tags are only written at the end,
+ * so a cut off file can't pass for a whole one.
+ */
+final class ExportBodies {
+    static final MediaType GZIP = MediaType.parseMediaType("application/gzip");
+
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+    private ExportBodies() {
+    }
+
+    enum Format {
+        NDJSON(MediaType.APPLICATION_NDJSON),
+        CSV(new MediaType("text", "csv", StandardCharsets.UTF_8)),
+        HTML(new MediaType("text", "html", StandardCharsets.UTF_8));
+
+        final MediaType mediaType;
+
+        Format(MediaType mediaType) {
+            this.mediaType = mediaType;
+        }
+
+        static Format of(String name) {
+            try {
+                return valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("format should be ndjson, csv or html");
+            }
+        }
+
+        String extension() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * The export runs with the sink of the format, gzip compresses the file itself with a sync flush per chunk
+     */
+    static StreamingResponseBody body(Format format, boolean gzip, ObjectMapper mapper, Consumer<ExportSink> export) {
+        return out -> {
+            OutputStream target = gzip ? new GZIPOutputStream(out, GZIP_BUFFER_SIZE, true) : out;
+            FileSink sink = switch (format) {
+                case NDJSON -> new NdjsonSink(mapper.createGenerator(target));
+                case CSV -> new CsvSink(writer(target));
+                case HTML -> new NetscapeSink(writer(target));
+            };
+            export.accept(sink);
+            sink.finish();
+        };
+    }
+
+    private interface FileSink extends ExportSink {
+        /**
+         * Writes what follows the last bookmark and closes the file
+         */
+        void finish() throws IOException;
+    }
+
+    /**
+     * One JSON document per line, tags first with their parent ids, then the bookmarks with their tag ids;
+     * the type field tells them apart
+     */
+    private static final class NdjsonSink implements FileSink {
+        private final JsonGenerator generator;
+
+        NdjsonSink(JsonGenerator generator) {
+            this.generator = generator;
+            generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void tags(TagForest forest) {
+            try {
+                for (int i = 0; i < forest.size(); i++) {
+                    generator.writeStartObject();
+                    generator.writeStringField("type", "tag");
+                    generator.writeNumberField("id", forest.id(i));
+                    if (forest.parent(i) != TagForest.NONE) {
+                        generator.writeNumberField("parentId", forest.id(forest.parent(i)));
+                    } else {
+                        generator.writeNullField("parentId");
+                    }
+                    generator.writeStringField("name", forest.name(i));
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                }
+                generator.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void bookmarks(List<BookmarkExportDto> chunk) {
+            try {
+                for (BookmarkExportDto bookmark : chunk) {
+                    generator.writeStartObject();
+                    generator.writeStringField("type", "bookmark");
+                    generator.writeNumberField("id", bookmark.getId());
+                    generator.writeStringField("url", bookmark.getUrl());
+                    generator.writeStringField("title", bookmark.getTitle());
+                    generator.writeStringField("description", bookmark.getDescription());
+                    generator.writeStringField("faviconUrl", bookmark.getFaviconUrl());
+                    generator.writeStringField("createdAt", format(bookmark.getCreatedAt()));
+                    generator.writeStringField("updatedAt", format(bookmark.getUpdatedAt()));
+                    generator.writeArrayFieldStart("tagIds");
+                    for (Integer tagId : bookmark.getTagIds()) {
+                        generator.writeNumber(tagId);
+                    }
+                    generator.writeEndArray();
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                }
+                generator.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.close();
+        }
+    }
+
+    /**
+     * RFC 4180 rows under a header line, tags as paths; tags without bookmarks are not part of it
+     */
+    private static final class CsvSink implements FileSink {
+        private final Writer writer;
+        private TagPaths tags;
+
+        CsvSink(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void tags(TagForest forest) {
+            tags = new TagPaths(forest);
+            try {
+                writer.write("id,url,title,description,favicon_url,created_at,updated_at,tags\r\n");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void bookmarks(List<BookmarkExportDto> chunk) {
+            try {
+                for (BookmarkExportDto bookmark : chunk) {
+                    writer.write(bookmark.getId().toString());
+                    writer.write(',');
+                    field(bookmark.getUrl());
+                    writer.write(',');
+                    field(bookmark.getTitle());
+                    writer.write(',');
+                    field(bookmark.getDescription());
+                    writer.write(',');
+                    field(bookmark.getFaviconUrl());
+                    writer.write(',');
+                    field(format(bookmark.getCreatedAt()));
+                    writer.write(',');
+                    field(format(bookmark.getUpdatedAt()));
+                    writer.write(',');
+                    field(tags.of(bookmark.getTagIds()));
+                    writer.write("\r\n");
+                }
+                writer.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * A value a spreadsheet would take for a formula gets a leading ' and quotes, it stays text there
+         */
+        private void field(String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            boolean formula = !value.isEmpty() && "=+-@\t\r".indexOf(value.charAt(0)) >= 0;
+            boolean quoted = formula;
+            for (int i = 0; i < value.length() && !quoted; i++) {
+                char c = value.charAt(i);
+                quoted = c == ',' || c == '"' || c == '\r' || c == '\n';
+            }
+            if (quoted) {
+                writer.write('"');
+                if (formula) {
+                    writer.write('\'');
+                }
+                writer.write(value.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(value);
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.close();
+        }
+    }
+
+    /**
+     * The bookmark file format of browsers as one flat list, tags in the TAGS attribute
+     */
+    private static final class NetscapeSink implements FileSink {
+        private final Writer writer;
+        private TagPaths tags;
+
+        NetscapeSink(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void tags(TagForest forest) {
+            tags = new TagPaths(forest);
+            try {
+                writer.write("""
+                        <!DOCTYPE NETSCAPE-Bookmark-file-1>
+                        <META HTTP-EQUIV="Content-Type" CONTENT="text/html; charset=UTF-8">
+                        <TITLE>Bookmarks</TITLE>
+                        <H1>Bookmarks</H1>
+                        <DL><p>
+                        """);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void bookmarks(List<BookmarkExportDto> chunk) {
+            try {
+                for (BookmarkExportDto bookmark : chunk) {
+                    writer.write("    <DT><A HREF=\"");
+                    writer.write(escape(bookmark.getUrl()));
+                    writer.write('"');
+                    attribute("ADD_DATE", epochSeconds(bookmark.getCreatedAt()));
+                    attribute("LAST_MODIFIED", epochSeconds(bookmark.getUpdatedAt()));
+                    attribute("ICON_URI", bookmark.getFaviconUrl());
+                    attribute("TAGS", tags.of(bookmark.getTagIds()));
+                    writer.write('>');
+                    writer.write(escape(bookmark.getTitle()));
+                    writer.write("</A>\n");
+                    // the import reads a description up to the end of its line
+                    if (bookmark.getDescription() != null && !bookmark.getDescription().isBlank()) {
+                        writer.write("    <DD>");
+                        writer.write(escape(bookmark.getDescription()));
+                        writer.write('\n');
+                    }
+                }
+                writer.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void attribute(String name, String value) throws IOException {
+            if (value == null || value.isEmpty()) {
+                return;
+            }
+            writer.write(' ');
+            writer.write(name);
+            writer.write("=\"");
+            writer.write(escape(value));
+            writer.write('"');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.write("</DL><p>\n");
+            writer.close();
+        }
+
+        private static String epochSeconds(LocalDateTime value) {
+            // timestamps are stored in the zone of the application, that of the jdbc session
+            return value != null ? Long.toString(value.atZone(ZoneId.systemDefault()).toEpochSecond()) : null;
+        }
+
+        /**
+         * Escaped the way NetscapeBookmarkParser unescapes, on a single line
+         */
+        private static String escape(String value) {
+            if (value == null) {
+                return "";
+            }
+            return value.replace("&", "&amp;")
+                    .replace("<", "&lt;")
+                    .replace(">", "&gt;")
+                    .replace("\"", "&quot;")
+                    .replace("'", "&#39;")
+                    .replaceAll("\\s*[\\r\\n]+\\s*", " ");
+        }
+    }
+
+    /**
+     * Name path of every tag of the forest, built once per export
+     */
+    private static final class TagPaths {
+        private final TagForest forest;
+        private final String[] paths;
+
+        TagPaths(TagForest forest) {
+            this.forest = forest;
+            this.paths = new String[forest.size()];
+        }
+
+        /**
+         * Paths of the tags joined by ',', ids missing from the forest are left out
+         */
+        String of(List<Integer> tagIds) {
+            if (tagIds.isEmpty()) {
+                return null;
+            }
+            StringBuilder result = new StringBuilder();
+            for (Integer tagId : tagIds) {
+                int index = forest.indexOf(tagId);
+                if (index != TagForest.NONE) {
+                    if (!result.isEmpty()) {
+                        result.append(',');
+                    }
+                    result.append(path(index));
+                }
+            }
+            return result.toString();
+        }
+
+        private String path(int index) {
+            if (paths[index] == null) {
+                String name = forest.name(index).replace('/', ' ').replace(',', ' ');
+                int parent = forest.parent(index);
+                // depth 0 also where a cycle in the stored tree was cut
+                paths[index] = parent == TagForest.NONE || forest.depth(index) == 0 ? name : path(parent) + "/" + name;
+            }
+            return paths[index];
+        }
+    }
+
+    private static Writer writer(OutputStream out) {
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    private static String format(LocalDateTime value) {
+        return value != null ? DATE_TIME.format(value) : null;
+    }
+}
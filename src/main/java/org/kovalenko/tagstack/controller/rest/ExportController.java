@@ -0,0 +1,136 @@
+package org.kovalenko.tagstack.controller.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.kovalenko.tagstack.service.ExportService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+
+/**
+ * An export holds a connection and a snapshot until the client has read the last byte, so only maxConcurrent of
+ * them run at once, further ones get 503; each may take up to the export timeout, other streamed bodies keep
+ * the default async timeout.
+ */
+@RestController
+@RequestMapping("/api/v0/export")
+public class ExportController {
+    private final ExportService exportService;
+    private final ObjectMapper objectMapper;
+    private final Semaphore exports;
+    private final Duration timeout;
+
+    public ExportController(ExportService exportService,
+                            ObjectMapper objectMapper,
+                            @Value("${tagstack.export.max-concurrent:2}") int maxConcurrent,
+                            @Value("${tagstack.export.timeout:15m}") Duration timeout) {
+        this.exportService = exportService;
+        this.objectMapper = objectMapper;
+        this.exports = new Semaphore(maxConcurrent);
+        this.timeout = timeout;
+    }
+
+    /**
+     * All tags and bookmarks of the user as one file, format is ndjson, csv or html (Netscape bookmarks).
+     * gzip compresses the file itself, for backups; without it the response is still compressed for clients
+     * that accept gzip.
+     */
+    @GetMapping
+    public ResponseEntity<ResponseBodyEmitter> export(
+            @RequestParam Integer userId,
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        ExportBodies.Format exportFormat;
+        try {
+            exportFormat = ExportBodies.Format.of(format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!exports.tryAcquire()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "60")
+                    .build();
+        }
+
+        MediaType mediaType = gzip ? ExportBodies.GZIP : exportFormat.mediaType;
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(timeout.toMillis());
+        emitter.onTimeout(() -> emitter.completeWithError(
+                new IOException("export of user " + userId + " did not finish within " + timeout)));
+        try {
+            Thread.ofVirtual().name("export-" + userId).start(() -> {
+                try {
+                    OutputStream out = new EmitterOutputStream(emitter, mediaType);
+                    ExportBodies.body(exportFormat, gzip, objectMapper, sink -> exportService.export(userId, sink))
+                            .writeTo(out);
+                    out.flush();
+                    emitter.complete();
+                } catch (IOException | RuntimeException e) {
+                    // also a timed out or disconnected response, sending to it fails and ends the export
+                    emitter.completeWithError(e);
+                } finally {
+                    exports.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            exports.release();
+            throw e;
+        }
+
+        String filename = "tagstack-export." + exportFormat.extension() + (gzip ? ".gz" : "");
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .contentType(mediaType)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(filename).build().toString())
+                .body(emitter);
+    }
+
+    /**
+     * Collects what is written and sends it to the emitter on every flush, once per chunk of the export
+     */
+    private static final class EmitterOutputStream extends OutputStream {
+        private final ResponseBodyEmitter emitter;
+        private final MediaType mediaType;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        EmitterOutputStream(ResponseBodyEmitter emitter, MediaType mediaType) {
+            this.emitter = emitter;
+            this.mediaType = mediaType;
+        }
+
+        @Override
+        public void write(int b) {
+            buffer.write(b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            buffer.write(bytes, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (buffer.size() > 0) {
+                emitter.send(buffer.toByteArray(), mediaType);
+                buffer.reset();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            // the gzip trailer and the closing tags are written when the file is closed
+            flush();
+        }
+    }
+}
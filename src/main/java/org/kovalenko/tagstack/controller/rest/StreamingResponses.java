@@ -0,0 +1,75 @@
+package org.kovalenko.tagstack.controller.rest;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Bodies of large collections written chunk by chunk while they are read instead of being built in memory first.
+ * Every chunk is flushed, so the first bytes leave before the last rows are loaded.
+ */
+final class StreamingResponses {
+    static final String SMILE_VALUE = "application/x-jackson-smile";
+    static final MediaType SMILE = MediaType.parseMediaType(SMILE_VALUE);
+
+    private StreamingResponses() {
+    }
+
+    /**
+     * Producer of the collection, hands every chunk to the consumer in order
+     */
+    @FunctionalInterface
+    interface ChunkSource<T> {
+        void forEachChunk(Consumer<List<T>> chunkConsumer);
+    }
+
+    /**
+     * One JSON document per line
+     */
+    static <T> StreamingResponseBody lines(ObjectMapper mapper, ChunkSource<T> source) {
+        ObjectWriter writer = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        return out -> {
+            try (JsonGenerator generator = mapper.createGenerator(out)) {
+                // the newline separates the documents, not the default space
+                generator.setRootValueSeparator(null);
+                source.forEachChunk(chunk -> write(writer, generator, chunk, true));
+            }
+        };
+    }
+
+    /**
+     * One array in the encoding of the mapper, JSON or Smile
+     */
+    static <T> StreamingResponseBody array(ObjectMapper mapper, ChunkSource<T> source) {
+        ObjectWriter writer = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        return out -> {
+            try (JsonGenerator generator = mapper.createGenerator(out)) {
+                generator.writeStartArray();
+                source.forEachChunk(chunk -> write(writer, generator, chunk, false));
+                generator.writeEndArray();
+            }
+        };
+    }
+
+    private static <T> void write(ObjectWriter writer, JsonGenerator generator, List<T> chunk, boolean lines) {
+        try {
+            for (T value : chunk) {
+                writer.writeValue(generator, value);
+                if (lines) {
+                    generator.writeRaw('\n');
+                }
+            }
+            generator.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.kovalenko.tagstack.controller.rest;
+
+import lombok.RequiredArgsConstructor;
+import org.kovalenko.tagstack.dto.SyncDto;
+import org.kovalenko.tagstack.service.SyncService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/v0/sync")
+@RequiredArgsConstructor
+public class SyncController {
+    private final SyncService syncService;
+
+    @GetMapping
+    public ResponseEntity<SyncDto> getChanges(
+            @RequestParam Integer userId,
+            @RequestParam(required = false) String since,
+            @RequestParam(required = false) Integer limit) {
+        try {
+            return ResponseEntity.ok(syncService.getChanges(userId, since, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+}
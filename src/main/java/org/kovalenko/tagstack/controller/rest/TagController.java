@@ -1,12 +1,24 @@
 package org.kovalenko.tagstack.controller.rest;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.kovalenko.tagstack.dto.TagBatchResultDto;
+import org.kovalenko.tagstack.dto.TagBookmarksRequestDto;
+import org.kovalenko.tagstack.dto.TagFacetDto;
+import org.kovalenko.tagstack.dto.TagMoveRequestDto;
 import org.kovalenko.tagstack.dto.TagRequestDto;
 import org.kovalenko.tagstack.dto.TagResponseDto;
+import org.kovalenko.tagstack.dto.TagSuggestionDto;
+import org.kovalenko.tagstack.dto.UserVersionDto;
 import org.kovalenko.tagstack.service.TagService;
+import org.kovalenko.tagstack.service.UserVersionService;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -15,10 +27,32 @@ import java.util.List;
 @RequiredArgsConstructor
 public class TagController {
     private final TagService tagService;
+    private final UserVersionService userVersionService;
+    private final ObjectMapper objectMapper;
+    private final MappingJackson2SmileHttpMessageConverter smileConverter;
 
-    @GetMapping
-    public ResponseEntity<List<TagResponseDto>> getAllTags(@RequestParam Integer userId) {
-        return ResponseEntity.ok(tagService.getAll(userId));
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> getAllTags(@RequestParam Integer userId, WebRequest request) {
+        UserVersionDto version = userVersionService.get(userId);
+        if (ConditionalRequests.notModified(request, version, "json")) {
+            return null;
+        }
+        return ConditionalRequests.okStreamed()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(StreamingResponses.<TagResponseDto>array(objectMapper,
+                        chunks -> tagService.streamAll(userId, chunks)));
+    }
+
+    @GetMapping(produces = StreamingResponses.SMILE_VALUE)
+    public ResponseEntity<StreamingResponseBody> getAllTagsSmile(@RequestParam Integer userId, WebRequest request) {
+        UserVersionDto version = userVersionService.get(userId);
+        if (ConditionalRequests.notModified(request, version, "smile")) {
+            return null;
+        }
+        return ConditionalRequests.okStreamed()
+                .contentType(StreamingResponses.SMILE)
+                .body(StreamingResponses.<TagResponseDto>array(smileConverter.getObjectMapper(),
+                        chunks -> tagService.streamAll(userId, chunks)));
     }
 
     @GetMapping("/search")
@@ -28,6 +62,29 @@ public class TagController {
         return ResponseEntity.ok(tagService.getByName(name, userId));
     }
 
+    @GetMapping("/suggest")
+    public ResponseEntity<List<TagSuggestionDto>> suggestTags(
+            @RequestParam String prefix,
+            @RequestParam Integer userId,
+            @RequestParam(required = false) Integer limit) {
+        try {
+            return ResponseEntity.ok(tagService.suggest(prefix, userId, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/facets")
+    public ResponseEntity<List<TagFacetDto>> getTagFacets(
+            @RequestParam Integer userId,
+            @RequestParam(required = false) String q) {
+        try {
+            return ResponseEntity.ok(tagService.getFacets(userId, q));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<TagResponseDto> getTagById(
             @PathVariable Integer id,
@@ -71,4 +128,54 @@ public class TagController {
             return ResponseEntity.notFound().build();
         }
     }
+
+    /**
+     * Bookmarks and children of the tag go to the target tag, then the tag is deleted
+     */
+    @PostMapping("/{id}/merge")
+    public ResponseEntity<TagBatchResultDto> mergeTag(
+            @PathVariable Integer id,
+            @RequestParam Integer into,
+            @RequestParam Integer userId) {
+        try {
+            return ResponseEntity.ok(tagService.merge(id, into, userId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @PostMapping("/move")
+    public ResponseEntity<TagBatchResultDto> moveTags(
+            @RequestBody TagMoveRequestDto moveRequest,
+            @RequestParam Integer userId) {
+        try {
+            return ResponseEntity.ok(tagService.move(moveRequest.getTagIds(), moveRequest.getParentId(), userId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @PostMapping("/{id}/bookmarks")
+    public ResponseEntity<TagBatchResultDto> addTagToBookmarks(
+            @PathVariable Integer id,
+            @RequestBody TagBookmarksRequestDto bookmarksRequest,
+            @RequestParam Integer userId) {
+        try {
+            return ResponseEntity.ok(tagService.addToBookmarks(id, bookmarksRequest.getBookmarkIds(), userId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @PostMapping("/{id}/bookmarks/remove")
+    public ResponseEntity<TagBatchResultDto> removeTagFromBookmarks(
+            @PathVariable Integer id,
+            @RequestBody TagBookmarksRequestDto bookmarksRequest,
+            @RequestParam Integer userId) {
+        try {
+            return ResponseEntity.ok(tagService.removeFromBookmarks(id, bookmarksRequest.getBookmarkIds(), userId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
 }
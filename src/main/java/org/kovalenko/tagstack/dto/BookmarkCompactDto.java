@@ -0,0 +1,34 @@
+package org.kovalenko.tagstack.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Bookmark of the compact list shape: fields left out of the projection are null and not serialized,
+ * tags are ids into the tag dictionary of the page
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BookmarkCompactDto {
+    private Integer id;
+    private String url;
+    private String title;
+    private String description;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+
+    private List<Integer> tagIds;
+
+    // constructor query of BookmarkRepository, the tag ids are filled in afterwards
+    public BookmarkCompactDto(Integer id, String url, String title, String description,
+                              LocalDateTime createdAt, LocalDateTime updatedAt) {
+        this(id, url, title, description, createdAt, updatedAt, null);
+    }
+}
@@ -0,0 +1,22 @@
+package org.kovalenko.tagstack.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BookmarkCompactPageDto {
+    private List<BookmarkCompactDto> items;
+
+    // every tag referenced by the items plus its ancestors, sent once per page; left out unless tags were requested
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<TagCompactDto> tags;
+
+    // opaque cursor for the "after" parameter, null on the last page
+    private String nextCursor;
+}
@@ -0,0 +1,12 @@
+package org.kovalenko.tagstack.dto;
+
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BookmarkDeleteResultDto {
+    private int deleted;
+}
@@ -0,0 +1,22 @@
+package org.kovalenko.tagstack.dto;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Bookmark row of an export, read straight from the cursor with the ids of its tags
+ */
+@Getter
+@AllArgsConstructor
+public class BookmarkExportDto {
+    private Integer id;
+    private String url;
+    private String title;
+    private String description;
+    private String faviconUrl;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    private List<Integer> tagIds;
+}
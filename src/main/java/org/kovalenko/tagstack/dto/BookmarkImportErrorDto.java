@@ -0,0 +1,15 @@
+package org.kovalenko.tagstack.dto;
+
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BookmarkImportErrorDto {
+    // position of the item in the input, starting at 0
+    private int index;
+    private String url;
+    private String message;
+}
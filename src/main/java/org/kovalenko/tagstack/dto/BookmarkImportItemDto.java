@@ -0,0 +1,19 @@
+package org.kovalenko.tagstack.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BookmarkImportItemDto {
+    private String url;
+    private String title;
+    private String description;
+
+    // tag paths from the root, segments separated by "/", e.g. "dev/java"
+    private List<String> tags;
+}
@@ -0,0 +1,16 @@
+package org.kovalenko.tagstack.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BookmarkImportResultDto {
+    private int imported;
+    private int failed;
+    private List<BookmarkImportErrorDto> errors;
+}
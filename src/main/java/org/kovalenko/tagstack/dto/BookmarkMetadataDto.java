@@ -0,0 +1,16 @@
+package org.kovalenko.tagstack.dto;
+
+import lombok.*;
+
+/**
+ * Page metadata found for a bookmark by the enrichment, null where the page had none
+ */
+@Getter
+@AllArgsConstructor
+public class BookmarkMetadataDto {
+    private Integer userId;
+    private Integer bookmarkId;
+    private String title;
+    private String description;
+    private String faviconUrl;
+}
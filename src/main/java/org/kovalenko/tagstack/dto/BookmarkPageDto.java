@@ -0,0 +1,17 @@
+package org.kovalenko.tagstack.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BookmarkPageDto {
+    private List<BookmarkResponseDto> items;
+
+    // opaque cursor for the "after" parameter, null on the last page
+    private String nextCursor;
+}
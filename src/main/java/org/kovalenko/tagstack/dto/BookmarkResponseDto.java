@@ -11,9 +11,11 @@ import java.util.Set;
 @AllArgsConstructor
 @Builder
 public class BookmarkResponseDto {
+    private Integer id;
     private String url;
     private String title;
     private String description;
+    private String faviconUrl;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
@@ -0,0 +1,13 @@
+package org.kovalenko.tagstack.dto;
+
+import lombok.*;
+
+/**
+ * Single bookmark_tags row
+ */
+@Getter
+@AllArgsConstructor
+public class BookmarkTagLinkDto {
+    private Integer bookmarkId;
+    private Integer tagId;
+}
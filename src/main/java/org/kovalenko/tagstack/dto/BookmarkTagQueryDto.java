@@ -0,0 +1,20 @@
+package org.kovalenko.tagstack.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BookmarkTagQueryDto {
+    private List<Integer> tags;
+
+    // "all" (default) or "any" of the tags
+    private String mode;
+
+    private List<Integer> exclude;
+    private Boolean includeDescendants;
+}
@@ -0,0 +1,23 @@
+package org.kovalenko.tagstack.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SyncDto {
+    // current state of the bookmarks and tags created or updated since the token
+    private List<BookmarkResponseDto> bookmarks;
+    private List<TagNodeDto> tags;
+
+    private List<Integer> deletedBookmarkIds;
+    private List<Integer> deletedTagIds;
+
+    // token for the next call, returned even when nothing changed
+    private String nextToken;
+    private boolean hasMore;
+}
@@ -0,0 +1,16 @@
+package org.kovalenko.tagstack.dto;
+
+import lombok.*;
+
+/**
+ * Rows changed by a batch tag operation: tags moved, merged away or re-pathed, and bookmarks whose tags changed
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TagBatchResultDto {
+    private int tags;
+    private int bookmarks;
+}
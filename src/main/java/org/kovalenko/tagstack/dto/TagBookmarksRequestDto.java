@@ -0,0 +1,14 @@
+package org.kovalenko.tagstack.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TagBookmarksRequestDto {
+    private List<Integer> bookmarkIds;
+}
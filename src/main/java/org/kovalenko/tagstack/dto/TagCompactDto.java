@@ -0,0 +1,16 @@
+package org.kovalenko.tagstack.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+/**
+ * Tag dictionary entry of the compact list shape, parentId is left out for roots
+ */
+@Getter
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TagCompactDto {
+    private Integer id;
+    private Integer parentId;
+    private String name;
+}
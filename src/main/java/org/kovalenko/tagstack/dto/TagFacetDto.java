@@ -0,0 +1,20 @@
+package org.kovalenko.tagstack.dto;
+
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TagFacetDto {
+    private Integer id;
+    private Integer parentId;
+    private String name;
+
+    // bookmarks tagged with this very tag
+    private long directCount;
+
+    // distinct bookmarks tagged with this tag or any tag below it
+    private long subtreeCount;
+}
@@ -0,0 +1,18 @@
+package org.kovalenko.tagstack.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Tags to move with their subtrees under one parent, a null parent makes them roots
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TagMoveRequestDto {
+    private List<Integer> tagIds;
+    private Integer parentId;
+}
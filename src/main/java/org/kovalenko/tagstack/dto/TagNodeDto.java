@@ -0,0 +1,15 @@
+package org.kovalenko.tagstack.dto;
+
+import lombok.*;
+
+/**
+ * Flat row of the user's tag forest, loaded with a constructor query instead of hydrating Tag entities
+ */
+@Getter
+@AllArgsConstructor
+public class TagNodeDto {
+    private Integer id;
+    private Integer parentId;
+    private String name;
+    private String path;
+}
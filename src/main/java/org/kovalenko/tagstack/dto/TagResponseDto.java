@@ -10,6 +10,7 @@ import java.util.List;
 @AllArgsConstructor
 @Builder
 public class TagResponseDto {
+    private Integer id;
     private String name;
     private List<TagResponseDto> children;
 }
@@ -0,0 +1,20 @@
+package org.kovalenko.tagstack.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TagSuggestionDto {
+    private Integer id;
+    private String name;
+
+    // names from the root down to the tag itself
+    private List<String> path;
+
+    private long usageCount;
+}
@@ -0,0 +1,17 @@
+package org.kovalenko.tagstack.dto;
+
+import lombok.*;
+
+import java.time.Instant;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserVersionDto {
+    private long version;
+
+    // null while the user has never written anything
+    private Instant updatedAt;
+}
@@ -0,0 +1,269 @@
+package org.kovalenko.tagstack.enrichment;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.kovalenko.tagstack.dto.BookmarkMetadataDto;
+import org.kovalenko.tagstack.event.BookmarksCreatedEvent;
+import org.kovalenko.tagstack.repository.BookmarkRepository;
+import org.kovalenko.tagstack.service.UserVersionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fills in the title, description and favicon of new bookmarks from their pages, off the request path.
+ * <p>
+ * Created bookmarks are queued after commit; at most queueCapacity are pending, beyond that they are dropped
+ * and counted. Every job gets a slot on its host when queued, slots of one host are hostInterval apart, and
+ * waits in a delay queue until then, so a slow or busy host never holds a worker. Workers fetch and parse
+ * the pages, the writer collects the results and applies up to batchSize of them in one transaction, after
+ * at most flushInterval.
+ */
+public class BookmarkEnricher {
+    private static final Logger log = LoggerFactory.getLogger(BookmarkEnricher.class);
+    // host slots in the past are forgotten once this many hosts are tracked
+    private static final int MAX_TRACKED_HOSTS = 10_000;
+
+    private final PageFetcher fetcher;
+    private final BookmarkRepository bookmarkRepository;
+    private final UserVersionService userVersionService;
+    private final TransactionTemplate transactionTemplate;
+    private final Settings settings;
+
+    private final Semaphore capacity;
+    private final DelayQueue<Job> jobs = new DelayQueue<>();
+    private final Map<String, Long> nextSlots = new ConcurrentHashMap<>();
+    private final BlockingQueue<BookmarkMetadataDto> results = new LinkedBlockingQueue<>();
+    private final List<Thread> threads = new ArrayList<>();
+
+    private final Counter dropped;
+    private final Counter enriched;
+    private final Counter empty;
+    private final Counter failed;
+    private final Counter updated;
+
+    /**
+     * @param queueCapacity bookmarks queued or in progress at most
+     * @param concurrency   pages fetched at once
+     * @param hostInterval  time between two requests to the same host
+     * @param batchSize     results written per transaction at most
+     * @param flushInterval time a result waits for its batch to fill at most
+     */
+    public record Settings(int queueCapacity, int concurrency, Duration hostInterval, int batchSize,
+                           Duration flushInterval) {
+    }
+
+    public BookmarkEnricher(PageFetcher fetcher,
+                            BookmarkRepository bookmarkRepository,
+                            UserVersionService userVersionService,
+                            TransactionTemplate transactionTemplate,
+                            MeterRegistry meterRegistry,
+                            Settings settings) {
+        if (settings.queueCapacity() < 1 || settings.concurrency() < 1 || settings.batchSize() < 1) {
+            throw new IllegalArgumentException("queue capacity, concurrency and batch size should be positive");
+        }
+        this.fetcher = fetcher;
+        this.bookmarkRepository = bookmarkRepository;
+        this.userVersionService = userVersionService;
+        this.transactionTemplate = transactionTemplate;
+        this.settings = settings;
+        this.capacity = new Semaphore(settings.queueCapacity());
+
+        this.dropped = jobCounter(meterRegistry, "dropped");
+        this.enriched = jobCounter(meterRegistry, "enriched");
+        this.empty = jobCounter(meterRegistry, "empty");
+        this.failed = jobCounter(meterRegistry, "failed");
+        this.updated = meterRegistry.counter("tagstack.enrichment.updates");
+        Gauge.builder("tagstack.enrichment.pending", capacity, c -> settings.queueCapacity() - c.availablePermits())
+                .register(meterRegistry);
+    }
+
+    public synchronized void start() {
+        if (!threads.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < settings.concurrency(); i++) {
+            threads.add(Thread.ofVirtual().name("enrichment-worker-" + i).start(this::work));
+        }
+        threads.add(Thread.ofVirtual().name("enrichment-writer").start(this::write));
+    }
+
+    /**
+     * Stops fetching; results already fetched are still written
+     */
+    public synchronized void stop() throws InterruptedException {
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        for (Thread thread : threads) {
+            thread.join(settings.flushInterval().toMillis() + 5_000);
+        }
+        threads.clear();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBookmarksCreated(BookmarksCreatedEvent event) {
+        for (BookmarksCreatedEvent.Created bookmark : event.bookmarks()) {
+            enqueue(event.userId(), bookmark.id(), bookmark.url());
+        }
+    }
+
+    void enqueue(Integer userId, Integer bookmarkId, String url) {
+        URI uri;
+        try {
+            uri = new URI(url.trim());
+        } catch (URISyntaxException e) {
+            return;
+        }
+        String scheme = uri.getScheme() != null ? uri.getScheme().toLowerCase(Locale.ROOT) : "";
+        if (uri.getHost() == null || !(scheme.equals("http") || scheme.equals("https"))) {
+            return;
+        }
+        if (!capacity.tryAcquire()) {
+            dropped.increment();
+            return;
+        }
+        jobs.add(new Job(userId, bookmarkId, uri, reserveSlot(uri.getHost().toLowerCase(Locale.ROOT))));
+    }
+
+    /**
+     * The time the job may run, one host interval after the previous job of the host
+     */
+    private long reserveSlot(String host) {
+        long now = System.nanoTime();
+        long interval = settings.hostInterval().toNanos();
+        if (nextSlots.size() > MAX_TRACKED_HOSTS) {
+            nextSlots.values().removeIf(next -> next - now < 0);
+        }
+        long next = nextSlots.compute(host, (key, previous) ->
+                (previous == null || previous - now < 0 ? now : previous) + interval);
+        return next - interval;
+    }
+
+    private void work() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Job job;
+            try {
+                job = jobs.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                Optional<PageMetadata> metadata = fetcher.fetch(job.uri())
+                        .map(page -> PageMetadataParser.parse(page.html(), page.uri()))
+                        .filter(found -> !found.isEmpty());
+                if (metadata.isPresent()) {
+                    results.add(new BookmarkMetadataDto(job.userId(), job.bookmarkId(),
+                            metadata.get().title(), metadata.get().description(), metadata.get().faviconUrl()));
+                    enriched.increment();
+                } else {
+                    empty.increment();
+                }
+            } catch (IOException | RuntimeException e) {
+                failed.increment();
+                log.debug("enrichment of bookmark {} from {} failed", job.bookmarkId(), job.uri(), e);
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                capacity.release();
+            }
+        }
+    }
+
+    private void write() {
+        List<BookmarkMetadataDto> batch = new ArrayList<>();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                batch = new ArrayList<>(settings.batchSize());
+                batch.add(results.take());
+                long deadline = System.nanoTime() + settings.flushInterval().toNanos();
+                while (batch.size() < settings.batchSize()) {
+                    results.drainTo(batch, settings.batchSize() - batch.size());
+                    long left = deadline - System.nanoTime();
+                    if (batch.size() >= settings.batchSize() || left <= 0) {
+                        break;
+                    }
+                    BookmarkMetadataDto next = results.poll(left, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            }
+        } catch (InterruptedException e) {
+            // the batch being collected was not written yet
+            results.drainTo(batch);
+            flush(batch);
+        }
+    }
+
+    private void flush(List<BookmarkMetadataDto> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> apply(batch));
+        } catch (RuntimeException e) {
+            // retry one by one so a result the database refuses doesn't cost the rest of the batch
+            log.debug("writing {} enrichment results failed, retrying one by one", batch.size(), e);
+            for (BookmarkMetadataDto metadata : batch) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> apply(List.of(metadata)));
+                } catch (RuntimeException itemException) {
+                    log.warn("writing the enrichment result of bookmark {} failed", metadata.getBookmarkId(),
+                            itemException);
+                }
+            }
+        }
+    }
+
+    private void apply(List<BookmarkMetadataDto> batch) {
+        List<BookmarkMetadataDto> changed = bookmarkRepository.updateMetadata(batch);
+        Set<Integer> users = new HashSet<>();
+        for (BookmarkMetadataDto metadata : changed) {
+            users.add(metadata.getUserId());
+        }
+        users.forEach(userVersionService::bump);
+        updated.increment(changed.size());
+    }
+
+    private static Counter jobCounter(MeterRegistry meterRegistry, String outcome) {
+        return meterRegistry.counter("tagstack.enrichment.jobs", "outcome", outcome);
+    }
+
+    private record Job(Integer userId, Integer bookmarkId, URI uri, long dueNanos) implements Delayed {
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueNanos, ((Job) other).dueNanos);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.kovalenko.tagstack.enrichment;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.kovalenko.tagstack.repository.BookmarkRepository;
+import org.kovalenko.tagstack.service.UserVersionService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Configuration
+@ConditionalOnProperty(name = "tagstack.enrichment.enabled", matchIfMissing = true)
+public class EnrichmentConfig {
+
+    @Bean
+    public PageFetcher pageFetcher(@Value("${tagstack.enrichment.fetch-timeout:5s}") Duration timeout,
+                                   @Value("${tagstack.enrichment.max-page-size:256KB}") DataSize maxPageSize,
+                                   @Value("${tagstack.enrichment.allow-private-addresses:false}")
+                                   boolean allowPrivateAddresses) {
+        return new HttpPageFetcher(timeout, (int) maxPageSize.toBytes(), allowPrivateAddresses);
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public BookmarkEnricher bookmarkEnricher(
+            PageFetcher pageFetcher,
+            BookmarkRepository bookmarkRepository,
+            UserVersionService userVersionService,
+            TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${tagstack.enrichment.queue-capacity:10000}") int queueCapacity,
+            @Value("${tagstack.enrichment.concurrency:8}") int concurrency,
+            @Value("${tagstack.enrichment.host-interval:1s}") Duration hostInterval,
+            @Value("${tagstack.enrichment.batch-size:100}") int batchSize,
+            @Value("${tagstack.enrichment.flush-interval:2s}") Duration flushInterval) {
+        return new BookmarkEnricher(pageFetcher, bookmarkRepository, userVersionService, transactionTemplate,
+                meterRegistry, new BookmarkEnricher.Settings(queueCapacity, concurrency, hostInterval, batchSize,
+                flushInterval));
+    }
+}
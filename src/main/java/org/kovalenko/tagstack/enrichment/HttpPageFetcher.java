@@ -0,0 +1,243 @@
+package org.kovalenko.tagstack.enrichment;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Fetches pages with the JDK http client. Only html is read and only up to maxBytes of it, the metadata sits
+ * in the head. The timeout bounds the whole fetch, redirects and the body included.
+ * <p>
+ * Bookmark urls come from users, so unless allowPrivateAddresses is set a host is resolved before every request
+ * and refused when any of its addresses is loopback, private, link-local or otherwise not public; redirects are
+ * followed here, hop by hop, to check each target. The client resolves the host again when connecting, that
+ * lookup is served by the JVM address cache, so it connects to the address checked.
+ */
+public class HttpPageFetcher implements PageFetcher {
+    private static final String USER_AGENT = "tagstack-enrichment/1.0";
+    private static final int MAX_REDIRECTS = 5;
+    private static final byte[] NAT64_PREFIX = {0, 0x64, (byte) 0xff, (byte) 0x9b, 0, 0, 0, 0, 0, 0, 0, 0};
+
+    private final HttpClient client;
+    private final Duration timeout;
+    private final int maxBytes;
+    private final boolean allowPrivateAddresses;
+
+    public HttpPageFetcher(Duration timeout, int maxBytes, boolean allowPrivateAddresses) {
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(timeout)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+        this.timeout = timeout;
+        this.maxBytes = maxBytes;
+        this.allowPrivateAddresses = allowPrivateAddresses;
+    }
+
+    @Override
+    public Optional<FetchedPage> fetch(URI uri) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        URI target = uri;
+        for (int redirects = 0; redirects <= MAX_REDIRECTS; redirects++) {
+            checkTarget(target);
+            HttpResponse<byte[]> response = send(target, deadline);
+            int status = response.statusCode();
+            if (status == 301 || status == 302 || status == 303 || status == 307 || status == 308) {
+                Optional<String> location = response.headers().firstValue("Location");
+                if (location.isEmpty()) {
+                    return Optional.empty();
+                }
+                try {
+                    target = target.resolve(location.get().trim());
+                } catch (IllegalArgumentException e) {
+                    return Optional.empty();
+                }
+                continue;
+            }
+            String contentType = contentType(response);
+            if (status / 100 != 2 || !contentType.contains("html")) {
+                return Optional.empty();
+            }
+            return Optional.of(new FetchedPage(target, new String(response.body(), charset(contentType))));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Sends the request and reads the body, all before the deadline; a late response is cancelled
+     */
+    private HttpResponse<byte[]> send(URI uri, long deadline) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(timeout)
+                .header("Accept", "text/html,application/xhtml+xml")
+                .header("User-Agent", USER_AGENT)
+                .GET()
+                .build();
+        CompletableFuture<HttpResponse<byte[]>> response = client.sendAsync(request, info -> {
+            boolean read = info.statusCode() / 100 == 2 && contentType(info).contains("html");
+            return new LimitedBody(read ? maxBytes : 0);
+        });
+        try {
+            return response.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            response.cancel(true);
+            throw new HttpTimeoutException("no page from " + uri + " within " + timeout);
+        } catch (InterruptedException e) {
+            response.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw new IOException("fetching " + uri + " failed", e.getCause());
+        }
+    }
+
+    private void checkTarget(URI uri) throws IOException {
+        String scheme = uri.getScheme() != null ? uri.getScheme().toLowerCase(Locale.ROOT) : "";
+        if (uri.getHost() == null || !(scheme.equals("http") || scheme.equals("https"))) {
+            throw new IOException("not an http url: " + uri);
+        }
+        if (allowPrivateAddresses) {
+            return;
+        }
+        for (InetAddress address : InetAddress.getAllByName(uri.getHost())) {
+            if (!isPublic(address)) {
+                throw new IOException("refused to fetch " + uri + ", its host resolves to " + address);
+            }
+        }
+    }
+
+    /**
+     * Whether the address is reachable on the internet, false for local, private and reserved ranges
+     */
+    static boolean isPublic(InetAddress address) {
+        byte[] bytes = address.getAddress();
+        if (address instanceof Inet6Address ipv6) {
+            if (ipv6.isAnyLocalAddress() || ipv6.isLoopbackAddress() || ipv6.isLinkLocalAddress()
+                    || ipv6.isSiteLocalAddress() || ipv6.isMulticastAddress()) {
+                return false;
+            }
+            // unique local fc00::/7
+            if ((bytes[0] & 0xfe) == 0xfc) {
+                return false;
+            }
+            // ::a.b.c.d and the NAT64 prefix 64:ff9b::/96 carry an IPv4 address
+            if (ipv6.isIPv4CompatibleAddress() || Arrays.equals(bytes, 0, 12, NAT64_PREFIX, 0, 12)) {
+                return isPublicIpv4(Arrays.copyOfRange(bytes, 12, 16));
+            }
+            return true;
+        }
+        return isPublicIpv4(bytes);
+    }
+
+    private static boolean isPublicIpv4(byte[] bytes) {
+        int first = bytes[0] & 0xff;
+        int second = bytes[1] & 0xff;
+        return first != 0 // this network
+                && first != 10
+                && first != 127
+                && !(first == 100 && (second & 0xc0) == 64) // shared address space 100.64.0.0/10
+                && !(first == 169 && second == 254)
+                && !(first == 172 && (second & 0xf0) == 16)
+                && !(first == 192 && second == 0 && bytes[2] == 0)
+                && !(first == 192 && second == 168)
+                && !(first == 198 && (second & 0xfe) == 18) // benchmarking 198.18.0.0/15
+                && first < 224; // multicast, reserved and broadcast
+    }
+
+    private static String contentType(HttpResponse.ResponseInfo info) {
+        return info.headers().firstValue("Content-Type").orElse("").toLowerCase(Locale.ROOT);
+    }
+
+    private static String contentType(HttpResponse<?> response) {
+        return response.headers().firstValue("Content-Type").orElse("").toLowerCase(Locale.ROOT);
+    }
+
+    private static Charset charset(String contentType) {
+        int start = contentType.indexOf("charset=");
+        if (start < 0) {
+            return StandardCharsets.UTF_8;
+        }
+        String name = contentType.substring(start + "charset=".length()).split(";")[0].replace("\"", "").trim();
+        try {
+            return Charset.forName(name);
+        } catch (IllegalArgumentException e) {
+            return StandardCharsets.UTF_8;
+        }
+    }
+
+    /**
+     * Keeps the first maxBytes of the body and cancels the rest, which drops the remainder of a large page
+     */
+    private static final class LimitedBody implements HttpResponse.BodySubscriber<byte[]> {
+        private final int maxBytes;
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+        private Flow.Subscription subscription;
+
+        LimitedBody(int maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public CompletableFuture<byte[]> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (maxBytes > 0) {
+                subscription.request(1);
+            } else {
+                subscription.cancel();
+                result.complete(new byte[0]);
+            }
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            for (ByteBuffer buffer : buffers) {
+                int length = Math.min(buffer.remaining(), maxBytes - bytes.size());
+                byte[] chunk = new byte[length];
+                buffer.get(chunk);
+                bytes.write(chunk, 0, length);
+            }
+            if (bytes.size() >= maxBytes) {
+                subscription.cancel();
+                result.complete(bytes.toByteArray());
+            } else {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(bytes.toByteArray());
+        }
+    }
+}
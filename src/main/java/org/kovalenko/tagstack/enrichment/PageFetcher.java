@@ -0,0 +1,24 @@
+package org.kovalenko.tagstack.enrichment;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Optional;
+
+/**
+ * Source of the pages bookmarks are enriched from. The default one fetches over http,
+ * tests plug in a local stub or a lambda.
+ */
+@FunctionalInterface
+public interface PageFetcher {
+
+    /**
+     * The html of the page, empty when the page is not html or the server did not answer with success
+     */
+    Optional<FetchedPage> fetch(URI uri) throws IOException, InterruptedException;
+
+    /**
+     * The uri is the one finally answered after redirects, relative links resolve against it
+     */
+    record FetchedPage(URI uri, String html) {
+    }
+}
@@ -0,0 +1,11 @@
+package org.kovalenko.tagstack.enrichment;
+
+/**
+ * Title, description and favicon url read from a page, null where the page has none
+ */
+public record PageMetadata(String title, String description, String faviconUrl) {
+
+    public boolean isEmpty() {
+        return title == null && description == null && faviconUrl == null;
+    }
+}
@@ -0,0 +1,153 @@
+package org.kovalenko.tagstack.enrichment;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the metadata of a page from the tags of its head: the title element or og:title, the description or
+ * og:description meta tag and the icon link, falling back to the conventional /favicon.ico of the host.
+ * Pages are matched with patterns rather than parsed into a document, only these few tags are needed.
+ */
+final class PageMetadataParser {
+    private static final int MAX_TITLE_LENGTH = 500;
+    private static final int MAX_DESCRIPTION_LENGTH = 2000;
+
+    private static final Pattern TITLE = Pattern.compile("<title[^>]*>(.*?)</title>",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern TAG = Pattern.compile("<(meta|link)\\s([^>]*)>", Pattern.CASE_INSENSITIVE);
+    private static final Pattern ATTRIBUTE = Pattern.compile(
+            "([\\w:-]+)\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)'|([^\\s\"'>]+))");
+    private static final Pattern ENTITY = Pattern.compile("&(#[xX]?[0-9a-fA-F]+|[a-zA-Z]+);");
+    // C0 and C1 controls and surrogates without their pair
+    private static final Pattern CONTROL = Pattern.compile("[\\p{Cc}\\p{Cs}]");
+    private static final Map<String, String> NAMED_ENTITIES = Map.of(
+            "amp", "&", "lt", "<", "gt", ">", "quot", "\"", "apos", "'", "nbsp", " ");
+
+    private PageMetadataParser() {
+    }
+
+    static PageMetadata parse(String html, URI page) {
+        int headEnd = html.toLowerCase(Locale.ROOT).indexOf("</head>");
+        String head = headEnd >= 0 ? html.substring(0, headEnd) : html;
+
+        String title = null;
+        Matcher titleMatcher = TITLE.matcher(head);
+        if (titleMatcher.find()) {
+            title = text(titleMatcher.group(1));
+        }
+
+        String ogTitle = null;
+        String description = null;
+        String ogDescription = null;
+        String icon = null;
+        String touchIcon = null;
+        Matcher tags = TAG.matcher(head);
+        while (tags.find()) {
+            Map<String, String> attributes = attributes(tags.group(2));
+            if (tags.group(1).equalsIgnoreCase("meta")) {
+                String name = attributes.getOrDefault("name", attributes.get("property"));
+                String content = text(attributes.get("content"));
+                if (name == null || content == null) {
+                    continue;
+                }
+                switch (name.toLowerCase(Locale.ROOT)) {
+                    case "og:title" -> ogTitle = first(ogTitle, content);
+                    case "description" -> description = first(description, content);
+                    case "og:description" -> ogDescription = first(ogDescription, content);
+                    default -> {
+                    }
+                }
+            } else {
+                String rel = attributes.get("rel");
+                String href = attributes.get("href");
+                if (rel == null || href == null || href.isBlank()) {
+                    continue;
+                }
+                rel = rel.toLowerCase(Locale.ROOT);
+                // "icon" and "shortcut icon"
+                if (rel.matches("(.*\\s)?icon(\\s.*)?")) {
+                    icon = first(icon, href);
+                } else if (rel.startsWith("apple-touch-icon")) {
+                    touchIcon = first(touchIcon, href);
+                }
+            }
+        }
+
+        return new PageMetadata(
+                truncate(first(title, ogTitle), MAX_TITLE_LENGTH),
+                truncate(first(description, ogDescription), MAX_DESCRIPTION_LENGTH),
+                favicon(page, first(icon, touchIcon)));
+    }
+
+    private static Map<String, String> attributes(String tag) {
+        Map<String, String> attributes = new HashMap<>();
+        Matcher matcher = ATTRIBUTE.matcher(tag);
+        while (matcher.find()) {
+            String value = matcher.group(2) != null ? matcher.group(2)
+                    : matcher.group(3) != null ? matcher.group(3) : matcher.group(4);
+            attributes.putIfAbsent(matcher.group(1).toLowerCase(Locale.ROOT), unescape(value));
+        }
+        return attributes;
+    }
+
+    private static String favicon(URI page, String href) {
+        try {
+            URI icon = page.resolve(href != null ? href.trim() : "/favicon.ico");
+            String scheme = icon.getScheme() != null ? icon.getScheme().toLowerCase(Locale.ROOT) : "";
+            return scheme.equals("http") || scheme.equals("https") ? icon.toString() : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Unescaped with control characters dropped and whitespace collapsed, null when nothing is left;
+     * postgres text can't hold a NUL, one would fail the whole batch of results
+     */
+    private static String text(String value) {
+        if (value == null) {
+            return null;
+        }
+        String text = CONTROL.matcher(unescape(value)).replaceAll(" ").replaceAll("\\s+", " ").trim();
+        return text.isEmpty() ? null : text;
+    }
+
+    private static String unescape(String value) {
+        Matcher matcher = ENTITY.matcher(value);
+        StringBuilder result = new StringBuilder();
+        while (matcher.find()) {
+            String entity = matcher.group(1);
+            String replacement = matcher.group();
+            if (entity.startsWith("#")) {
+                try {
+                    boolean hex = entity.length() > 1 && (entity.charAt(1) == 'x' || entity.charAt(1) == 'X');
+                    int codePoint = Integer.parseInt(entity.substring(hex ? 2 : 1), hex ? 16 : 10);
+                    replacement = Character.toString(codePoint);
+                } catch (IllegalArgumentException e) {
+                    // not a valid code point, kept as written
+                }
+            } else {
+                replacement = NAMED_ENTITIES.getOrDefault(entity.toLowerCase(Locale.ROOT), replacement);
+            }
+            matcher.appendReplacement(result, Matcher.quoteReplacement(replacement));
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    private static String first(String current, String candidate) {
+        return current != null ? current : candidate;
+    }
+
+    private static String truncate(String value, int maxLength) {
+        if (value == null || value.length() <= maxLength) {
+            return value;
+        }
+        // not between the two halves of a surrogate pair
+        return value.substring(0, Character.isHighSurrogate(value.charAt(maxLength - 1)) ? maxLength - 1 : maxLength);
+    }
+}
@@ -8,8 +8,6 @@ import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDateTime;
-import java.util.HashSet;
-import java.util.Set;
 
 @Entity
 @Table(name = "bookmarks")
@@ -20,7 +18,8 @@ import java.util.Set;
 @Builder
 public class Bookmark {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "bookmarks_seq")
+    @SequenceGenerator(name = "bookmarks_seq", sequenceName = "bookmarks_seq", allocationSize = 50)
     private Integer id;
 
     @Column(name = "user_id")
@@ -31,10 +30,18 @@ public class Bookmark {
     @NotBlank(message = "url should not be blank")
     private String url;
 
+    // SHA-256 of the canonical url, see UrlNormalizer
+    @Column(name = "url_hash", nullable = false)
+    private byte[] urlHash;
+
     private String title;
 
     private String description;
 
+    // filled in by the metadata enrichment, see BookmarkEnricher
+    @Column(name = "favicon_url")
+    private String faviconUrl;
+
     @CreationTimestamp
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
@@ -43,12 +50,5 @@ public class Bookmark {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
-    @ManyToMany
-    @Builder.Default
-    @JoinTable(
-            name = "bookmark_tags",
-            joinColumns = @JoinColumn(name = "bookmark_id"),
-            inverseJoinColumns = @JoinColumn(name = "tag_id")
-    )
-    private Set<Tag> tags = new HashSet<>();
+    // bookmark_tags is partitioned by user_id and written with explicit SQL, see BookmarkRepositoryCustom
 }
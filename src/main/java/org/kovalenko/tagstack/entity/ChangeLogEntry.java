@@ -0,0 +1,44 @@
+package org.kovalenko.tagstack.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.Immutable;
+
+import java.time.Instant;
+
+/**
+ * Row of the change log, written by database triggers only
+ */
+@Entity
+@Immutable
+@Table(name = "change_log")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChangeLogEntry {
+    public static final String BOOKMARK = "bookmark";
+    public static final String TAG = "tag";
+    public static final String DELETE = "D";
+
+    @Id
+    private Long id;
+
+    @Column(name = "user_id")
+    private Integer userId;
+
+    @Column(name = "tx_id")
+    private Long txId;
+
+    @Column(name = "entity_type")
+    private String entityType;
+
+    @Column(name = "entity_id")
+    private Integer entityId;
+
+    private String operation;
+
+    @Column(name = "changed_at")
+    private Instant changedAt;
+}
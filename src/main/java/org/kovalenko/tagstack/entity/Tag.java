@@ -3,12 +3,19 @@ package org.kovalenko.tagstack.entity;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.HashSet;
 import java.util.Set;
 
+/**
+ * Kept in the second level cache, loads by id and parent references are served from it.
+ * Writes through hibernate update the cached entry, the native subtree statements on tags clear the region.
+ */
 @Entity
 @Table(name = "tags")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "tags")
 @Getter
 @Setter
 @NoArgsConstructor
@@ -16,7 +23,8 @@ import java.util.Set;
 @Builder(toBuilder = true)
 public class Tag {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "tags_seq")
+    @SequenceGenerator(name = "tags_seq", sequenceName = "tags_seq", allocationSize = 50)
     private Integer id;
 
     @Column(name = "user_id")
@@ -30,12 +38,13 @@ public class Tag {
     @JoinColumn(name = "parent_id")
     private Tag parent;
 
-    @OneToMany(mappedBy = "parent", cascade = CascadeType.ALL, orphanRemoval = true)
-    @Builder.Default
-    private Set<Tag> children = new HashSet<>();
+    // ids from the root down to this tag, e.g. /1/5/9/
+    private String path;
 
-    @ManyToMany(mappedBy = "tags")
+    // subtrees are deleted and moved with set-based statements on path, never through this collection;
+    // not cached, as the inverse side it is not updated when a child is added or moved
+    @OneToMany(mappedBy = "parent")
     @Builder.Default
-    private Set<Bookmark> bookmarks = new HashSet<>();
+    private Set<Tag> children = new HashSet<>();
 
 }
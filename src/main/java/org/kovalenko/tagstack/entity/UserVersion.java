@@ -0,0 +1,24 @@
+package org.kovalenko.tagstack.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "user_versions")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserVersion {
+    @Id
+    @Column(name = "user_id")
+    private Integer userId;
+
+    private Long version;
+
+    @Column(name = "updated_at")
+    private Instant updatedAt;
+}
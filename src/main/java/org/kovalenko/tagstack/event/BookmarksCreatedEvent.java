@@ -0,0 +1,13 @@
+package org.kovalenko.tagstack.event;
+
+import java.util.List;
+
+/**
+ * Published when bookmarks are created without a title or description, listeners react after the transaction
+ * commits
+ */
+public record BookmarksCreatedEvent(Integer userId, List<Created> bookmarks) {
+
+    public record Created(Integer id, String url) {
+    }
+}
@@ -0,0 +1,21 @@
+package org.kovalenko.tagstack.event;
+
+import org.kovalenko.tagstack.dto.TagNodeDto;
+
+import java.util.List;
+
+/**
+ * Published by every tag write, listeners react after the transaction commits.
+ * A write that knows its change lists the inserted or updated tags and the roots of the deleted subtrees,
+ * without them listeners have to assume anything changed.
+ */
+public record TagsChangedEvent(Integer userId, List<TagNodeDto> upserted, List<Integer> removedSubtrees) {
+
+    public TagsChangedEvent(Integer userId) {
+        this(userId, null, null);
+    }
+
+    public boolean isDelta() {
+        return upserted != null && removedSubtrees != null;
+    }
+}
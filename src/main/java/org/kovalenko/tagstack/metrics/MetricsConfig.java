@@ -0,0 +1,53 @@
+package org.kovalenko.tagstack.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.InitializeCollectionEventListener;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public static RepositoryMetricsPostProcessor repositoryMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new RepositoryMetricsPostProcessor(meterRegistry);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer statementInspectorCustomizer(
+            @Value("${tagstack.sql.sample-rate:0}") double sampleRate) {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, new SampledStatementInspector(sampleRate));
+    }
+
+    @Bean
+    public RequestQueryStatsFilter requestQueryStatsFilter(MeterRegistry meterRegistry) {
+        return new RequestQueryStatsFilter(meterRegistry);
+    }
+
+    /**
+     * Per-request entity load and collection fetch counting. The global statistics
+     * (hibernate.generate_statistics) are bound as hibernate.* meters by Spring Boot.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void registerHibernateListeners(ApplicationReadyEvent event) {
+        SessionFactoryImplementor sessionFactory = event.getApplicationContext()
+                .getBean(EntityManagerFactory.class)
+                .unwrap(SessionFactoryImplementor.class);
+
+        EventListenerRegistry listeners = sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class);
+        listeners.appendListeners(EventType.POST_LOAD, (PostLoadEventListener) loadEvent -> RequestQueryStats.entityLoaded());
+        listeners.appendListeners(EventType.INIT_COLLECTION,
+                (InitializeCollectionEventListener) collectionEvent -> RequestQueryStats.collectionFetched());
+    }
+}
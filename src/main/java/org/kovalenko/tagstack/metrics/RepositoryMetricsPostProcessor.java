@@ -0,0 +1,40 @@
+package org.kovalenko.tagstack.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.data.repository.core.support.RepositoryMethodInvocationListener;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every repository method call as tagstack.repository.invocations{repository, method, state}
+ */
+public class RepositoryMetricsPostProcessor implements BeanPostProcessor {
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    public RepositoryMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+            RepositoryMethodInvocationListener listener = this::record;
+            factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addInvocationListener(listener));
+        }
+        return bean;
+    }
+
+    private void record(RepositoryMethodInvocationListener.RepositoryMethodInvocation invocation) {
+        // the registry is resolved on first use, post processors are created before it exists
+        Timer.builder("tagstack.repository.invocations")
+                .tag("repository", invocation.getRepositoryInterface().getSimpleName())
+                .tag("method", invocation.getMethod().getName())
+                .tag("state", invocation.getResult().getState().name())
+                .register(meterRegistry.getObject())
+                .record(invocation.getDuration(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+    }
+}
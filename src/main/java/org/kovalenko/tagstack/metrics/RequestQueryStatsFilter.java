@@ -0,0 +1,51 @@
+package org.kovalenko.tagstack.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Records statements, entity loads and collection fetches per request as distribution summaries tagged by uri.
+ * Streaming bodies written on another thread after the handler returned are not included.
+ */
+@RequiredArgsConstructor
+public class RequestQueryStatsFilter extends OncePerRequestFilter {
+    private static final String STATEMENTS = "SQL statements prepared by hibernate and by the JDBC work of "
+            + "the repositories, a JDBC batch counts once";
+
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        RequestQueryStats stats = RequestQueryStats.start();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            RequestQueryStats.finish();
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+            record("tagstack.request.statements", STATEMENTS, uri, stats.getStatements());
+            record("tagstack.request.entity.loads", "entities loaded by hibernate", uri, stats.getEntityLoads());
+            record("tagstack.request.collection.fetches", "collections fetched by hibernate", uri,
+                    stats.getCollectionFetches());
+        }
+    }
+
+    private void record(String name, String description, String uri, int value) {
+        DistributionSummary.builder(name)
+                .description(description)
+                .tag("uri", uri)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(value);
+    }
+}
@@ -0,0 +1,31 @@
+package org.kovalenko.tagstack.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Counts statements for {@link RequestQueryStats} and logs a random sample of them,
+ * a cheap replacement for show_sql which prints every statement.
+ * Hibernate calls it for the statements it prepares; JDBC work in the repositories calls it for its own.
+ */
+public class SampledStatementInspector implements StatementInspector {
+    private static final Logger log = LoggerFactory.getLogger("org.kovalenko.tagstack.sql.sample");
+
+    private final double sampleRate;
+
+    public SampledStatementInspector(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        RequestQueryStats.statementPrepared();
+        if (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            log.info("{}", sql);
+        }
+        return sql;
+    }
+}
@@ -1,22 +1,151 @@
 package org.kovalenko.tagstack.repository;
 
+import jakarta.persistence.QueryHint;
+import org.kovalenko.tagstack.dto.BookmarkCompactDto;
 import org.kovalenko.tagstack.entity.Bookmark;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_NATIVE_SPACES;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository
-public interface BookmarkRepository extends JpaRepository<Bookmark, Integer> {
+public interface BookmarkRepository extends JpaRepository<Bookmark, Integer>, BookmarkRepositoryCustom {
     List<Bookmark> findAllByUserId(Integer userId);
     List<Bookmark> findAllByTitleContainingIgnoreCaseAndUserId(String title, Integer userId);
     Optional<Bookmark> findByIdAndUserId(Integer id, Integer userId);
+    List<Bookmark> findAllByIdInAndUserId(Collection<Integer> ids, Integer userId);
     List<Bookmark> findAllByUrlContainingIgnoreCaseAndUserId(String urlPart, Integer userId);
-    void deleteByUrlAndUserId(String url, Integer userId);
 
-    @Query("SELECT b FROM Bookmark b JOIN b.tags t WHERE t.id = :tagId AND b.userId = :userId")
+    boolean existsByUrlHashAndUserId(byte[] urlHash, Integer userId);
+    boolean existsByUrlHashAndUserIdAndIdNot(byte[] urlHash, Integer userId, Integer id);
+
+    /**
+     * Which of the given url hashes the user already has
+     */
+    @Query("SELECT b.urlHash FROM Bookmark b WHERE b.userId = :userId AND b.urlHash IN :urlHashes")
+    List<byte[]> findUrlHashes(@Param("userId") Integer userId, @Param("urlHashes") Collection<byte[]> urlHashes);
+
+    @Query(value = "SELECT b.id, b.user_id, b.url, b.url_hash, b.title, b.description, b.favicon_url, " +
+            "b.created_at, b.updated_at " +
+            "FROM bookmarks b " +
+            "JOIN bookmark_tags bt ON bt.user_id = b.user_id AND bt.bookmark_id = b.id " +
+            "WHERE b.user_id = :userId AND bt.tag_id = :tagId", nativeQuery = true)
     List<Bookmark> findAllByTagIdAndUserId(@Param("tagId") Integer tagId, @Param("userId") Integer userId);
+
+    /**
+     * Bulk deletes run as one statement each, bookmark_tags rows go with the on delete cascade of their foreign key.
+     * The persistence context is flushed before and cleared after, so no stale bookmark survives in it.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM Bookmark b WHERE b.userId = :userId AND b.id IN :ids")
+    int deleteAllByIdInAndUserId(@Param("ids") Collection<Integer> ids, @Param("userId") Integer userId);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM Bookmark b WHERE b.userId = :userId AND b.urlHash = :urlHash")
+    int deleteAllByUrlHashAndUserId(@Param("urlHash") byte[] urlHash, @Param("userId") Integer userId);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM Bookmark b WHERE b.userId = :userId AND b.createdAt >= :from AND b.createdAt < :to")
+    int deleteAllByCreatedAtBetween(@Param("from") LocalDateTime from,
+                                    @Param("to") LocalDateTime to,
+                                    @Param("userId") Integer userId);
+
+    /**
+     * Deletes the bookmarks carrying the tag or, optionally, any tag of its subtree
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "bookmarks"))
+    @Query(value = "DELETE FROM bookmarks b WHERE b.user_id = :userId AND EXISTS (" +
+            "SELECT 1 FROM bookmark_tags bt " +
+            "JOIN tags t ON t.id = bt.tag_id " +
+            "JOIN tags a ON a.user_id = t.user_id " +
+            "AND (t.id = a.id OR (:includeDescendants AND t.path LIKE a.path || '%')) " +
+            "WHERE bt.user_id = b.user_id AND bt.bookmark_id = b.id AND a.user_id = :userId AND a.id = :tagId)",
+            nativeQuery = true)
+    int deleteAllByTag(@Param("tagId") Integer tagId,
+                       @Param("includeDescendants") boolean includeDescendants,
+                       @Param("userId") Integer userId);
+
+    /**
+     * Removes the given tags from the bookmark
+     */
+    @Modifying(flushAutomatically = true)
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "bookmark_tags"))
+    @Query(value = "DELETE FROM bookmark_tags " +
+            "WHERE user_id = :userId AND bookmark_id = :bookmarkId AND tag_id IN (:tagIds)", nativeQuery = true)
+    int deleteTagLinks(@Param("userId") Integer userId,
+                       @Param("bookmarkId") Integer bookmarkId,
+                       @Param("tagIds") Collection<Integer> tagIds);
+
+    /**
+     * Full-text search, best ranked first; query is a to_tsquery expression
+     */
+    @Query(value = "SELECT b.id, b.user_id, b.url, b.url_hash, b.title, b.description, b.favicon_url, " +
+            "b.created_at, b.updated_at " +
+            "FROM bookmarks b " +
+            "WHERE b.user_id = :userId AND b.search_vector @@ to_tsquery('simple', :query) " +
+            "ORDER BY ts_rank(b.search_vector, to_tsquery('simple', :query)) DESC, b.id " +
+            "LIMIT :limit OFFSET :offset", nativeQuery = true)
+    List<Bookmark> search(@Param("userId") Integer userId,
+                          @Param("query") String query,
+                          @Param("limit") int limit,
+                          @Param("offset") int offset);
+
+    /**
+     * First page of the keyset ordering (created_at, id)
+     */
+    @Query("SELECT b FROM Bookmark b WHERE b.userId = :userId ORDER BY b.createdAt, b.id")
+    List<Bookmark> findFirstPage(@Param("userId") Integer userId, Limit limit);
+
+    /**
+     * Next page of the keyset ordering (created_at, id), strictly after the given position
+     */
+    @Query("SELECT b FROM Bookmark b WHERE b.userId = :userId " +
+            "AND (b.createdAt > :createdAt OR (b.createdAt = :createdAt AND b.id > :id)) " +
+            "ORDER BY b.createdAt, b.id")
+    List<Bookmark> findPageAfter(@Param("userId") Integer userId,
+                                 @Param("createdAt") LocalDateTime createdAt,
+                                 @Param("id") Integer id,
+                                 Limit limit);
+
+    /**
+     * First page of the keyset ordering as compact DTOs, a constructor query without entity hydration
+     */
+    @Query("SELECT new org.kovalenko.tagstack.dto.BookmarkCompactDto(" +
+            "b.id, b.url, b.title, b.description, b.createdAt, b.updatedAt) " +
+            "FROM Bookmark b WHERE b.userId = :userId ORDER BY b.createdAt, b.id")
+    List<BookmarkCompactDto> findFirstCompactPage(@Param("userId") Integer userId, Limit limit);
+
+    @Query("SELECT new org.kovalenko.tagstack.dto.BookmarkCompactDto(" +
+            "b.id, b.url, b.title, b.description, b.createdAt, b.updatedAt) " +
+            "FROM Bookmark b WHERE b.userId = :userId " +
+            "AND (b.createdAt > :createdAt OR (b.createdAt = :createdAt AND b.id > :id)) " +
+            "ORDER BY b.createdAt, b.id")
+    List<BookmarkCompactDto> findCompactPageAfter(@Param("userId") Integer userId,
+                                                  @Param("createdAt") LocalDateTime createdAt,
+                                                  @Param("id") Integer id,
+                                                  Limit limit);
+
+    /**
+     * Streams all bookmarks of the user through a server-side cursor, must be consumed inside a transaction
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT b FROM Bookmark b WHERE b.userId = :userId ORDER BY b.createdAt, b.id")
+    Stream<Bookmark> streamAllByUserId(@Param("userId") Integer userId);
 }
@@ -0,0 +1,49 @@
+package org.kovalenko.tagstack.repository;
+
+import org.kovalenko.tagstack.dto.BookmarkExportDto;
+import org.kovalenko.tagstack.dto.BookmarkMetadataDto;
+import org.kovalenko.tagstack.dto.BookmarkTagLinkDto;
+import org.kovalenko.tagstack.entity.Bookmark;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+public interface BookmarkRepositoryCustom {
+
+    /**
+     * Bookmarks carrying all (or any) of the tags and none of the excluded ones, in keyset order (created_at, id).
+     * A null position starts from the first page.
+     */
+    List<Bookmark> findAllByTags(Integer userId,
+                                 Collection<Integer> tagIds,
+                                 boolean matchAll,
+                                 Collection<Integer> excludeTagIds,
+                                 boolean includeDescendants,
+                                 LocalDateTime afterCreatedAt,
+                                 Integer afterId,
+                                 int limit);
+
+    /**
+     * Tag links of the given bookmarks, restricted to the user's partition
+     */
+    List<BookmarkTagLinkDto> findTagLinks(Integer userId, Collection<Integer> bookmarkIds);
+
+    /**
+     * Inserts the links as one jdbc batch after flushing pending bookmark inserts, existing links are skipped
+     */
+    void insertTagLinks(Integer userId, Collection<BookmarkTagLinkDto> links);
+
+    /**
+     * Fills blank titles, descriptions and missing favicons from the metadata as one jdbc batch, values the user
+     * has set are kept. Returns the metadata that changed a row.
+     */
+    List<BookmarkMetadataDto> updateMetadata(List<BookmarkMetadataDto> metadata);
+
+    /**
+     * Reads all bookmarks of the user through a server-side cursor, fetchSize rows at a time, and hands every
+     * fetch to the consumer as one chunk. Must run inside a transaction, outside one the driver reads everything.
+     */
+    void streamExport(Integer userId, int fetchSize, Consumer<List<BookmarkExportDto>> chunkConsumer);
+}
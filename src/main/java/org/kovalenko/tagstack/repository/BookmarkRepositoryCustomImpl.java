@@ -0,0 +1,222 @@
+package org.kovalenko.tagstack.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.kovalenko.tagstack.dto.BookmarkExportDto;
+import org.kovalenko.tagstack.dto.BookmarkMetadataDto;
+import org.kovalenko.tagstack.dto.BookmarkTagLinkDto;
+import org.kovalenko.tagstack.entity.Bookmark;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.Consumer;
+
+public class BookmarkRepositoryCustomImpl implements BookmarkRepositoryCustom {
+    private static final int LINK_BATCH_SIZE = 500;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Bookmark> findAllByTags(Integer userId,
+                                        Collection<Integer> tagIds,
+                                        boolean matchAll,
+                                        Collection<Integer> excludeTagIds,
+                                        boolean includeDescendants,
+                                        LocalDateTime afterCreatedAt,
+                                        Integer afterId,
+                                        int limit) {
+        // a requested tag "a" matches a bookmark tag "t" that is the tag itself or, optionally, any tag below it
+        String tagMatch = includeDescendants
+                ? "(t.id = a.id OR t.path LIKE a.path || '%')"
+                : "t.id = a.id";
+
+        StringBuilder sql = new StringBuilder(
+                "SELECT b.id, b.user_id, b.url, b.url_hash, b.title, b.description, b.favicon_url, " +
+                        "b.created_at, b.updated_at " +
+                        "FROM bookmarks b WHERE b.user_id = :userId");
+        if (!tagIds.isEmpty()) {
+            sql.append(" AND b.id IN (SELECT bt.bookmark_id FROM tags a")
+                    .append(" JOIN tags t ON t.user_id = a.user_id AND ").append(tagMatch)
+                    .append(" JOIN bookmark_tags bt ON bt.user_id = t.user_id AND bt.tag_id = t.id")
+                    .append(" WHERE a.user_id = :userId AND a.id IN (:tagIds)")
+                    .append(" GROUP BY bt.bookmark_id HAVING count(DISTINCT a.id) >= :required)");
+        }
+        if (!excludeTagIds.isEmpty()) {
+            sql.append(" AND NOT EXISTS (SELECT 1 FROM tags a")
+                    .append(" JOIN tags t ON t.user_id = a.user_id AND ").append(tagMatch)
+                    .append(" JOIN bookmark_tags bt ON bt.user_id = t.user_id AND bt.tag_id = t.id")
+                    .append(" WHERE a.user_id = :userId AND a.id IN (:excludeTagIds) AND bt.bookmark_id = b.id)");
+        }
+        if (afterId != null) {
+            sql.append(" AND (b.created_at > :createdAt OR (b.created_at = :createdAt AND b.id > :id))");
+        }
+        sql.append(" ORDER BY b.created_at, b.id LIMIT :limit");
+
+        Query query = entityManager.createNativeQuery(sql.toString(), Bookmark.class)
+                .setParameter("userId", userId)
+                .setParameter("limit", limit);
+        if (!tagIds.isEmpty()) {
+            query.setParameter("tagIds", tagIds)
+                    .setParameter("required", matchAll ? new HashSet<>(tagIds).size() : 1);
+        }
+        if (!excludeTagIds.isEmpty()) {
+            query.setParameter("excludeTagIds", excludeTagIds);
+        }
+        if (afterId != null) {
+            query.setParameter("createdAt", afterCreatedAt)
+                    .setParameter("id", afterId);
+        }
+        return query.getResultList();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<BookmarkTagLinkDto> findTagLinks(Integer userId, Collection<Integer> bookmarkIds) {
+        if (bookmarkIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Object[]> rows = entityManager.createNativeQuery(
+                        "SELECT bt.bookmark_id, bt.tag_id FROM bookmark_tags bt " +
+                                "WHERE bt.user_id = :userId AND bt.bookmark_id IN (:bookmarkIds)")
+                .setParameter("userId", userId)
+                .setParameter("bookmarkIds", bookmarkIds)
+                .getResultList();
+
+        List<BookmarkTagLinkDto> result = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            result.add(new BookmarkTagLinkDto(((Number) row[0]).intValue(), ((Number) row[1]).intValue()));
+        }
+        return result;
+    }
+
+    @Override
+    public void insertTagLinks(Integer userId, Collection<BookmarkTagLinkDto> links) {
+        if (links.isEmpty()) {
+            return;
+        }
+        // the bookmarks have to be in the database before the foreign keys are checked
+        entityManager.flush();
+        Session session = entityManager.unwrap(Session.class);
+        String sql = inspect(session,
+                "INSERT INTO bookmark_tags (user_id, bookmark_id, tag_id) VALUES (?, ?, ?) ON CONFLICT DO NOTHING");
+        session.doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                int pending = 0;
+                for (BookmarkTagLinkDto link : links) {
+                    statement.setInt(1, userId);
+                    statement.setInt(2, link.getBookmarkId());
+                    statement.setInt(3, link.getTagId());
+                    statement.addBatch();
+                    if (++pending == LINK_BATCH_SIZE) {
+                        statement.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    statement.executeBatch();
+                }
+            }
+        });
+    }
+
+    @Override
+    public List<BookmarkMetadataDto> updateMetadata(List<BookmarkMetadataDto> metadata) {
+        if (metadata.isEmpty()) {
+            return List.of();
+        }
+        Session session = entityManager.unwrap(Session.class);
+        // rows with nothing to fill are left alone, so change_log only sees real changes
+        String sql = inspect(session, "UPDATE bookmarks SET title = coalesce(nullif(title, ''), ?), " +
+                "description = coalesce(nullif(description, ''), ?), " +
+                "favicon_url = coalesce(favicon_url, ?), updated_at = now() " +
+                "WHERE user_id = ? AND id = ? " +
+                "AND ((nullif(title, '') IS NULL AND ? IS NOT NULL) " +
+                "OR (nullif(description, '') IS NULL AND ? IS NOT NULL) " +
+                "OR (favicon_url IS NULL AND ? IS NOT NULL))");
+        return session.doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (BookmarkMetadataDto item : metadata) {
+                    statement.setString(1, item.getTitle());
+                    statement.setString(2, item.getDescription());
+                    statement.setString(3, item.getFaviconUrl());
+                    statement.setInt(4, item.getUserId());
+                    statement.setInt(5, item.getBookmarkId());
+                    statement.setString(6, item.getTitle());
+                    statement.setString(7, item.getDescription());
+                    statement.setString(8, item.getFaviconUrl());
+                    statement.addBatch();
+                }
+                int[] counts = statement.executeBatch();
+                List<BookmarkMetadataDto> updated = new ArrayList<>();
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] > 0) {
+                        updated.add(metadata.get(i));
+                    }
+                }
+                return updated;
+            }
+        });
+    }
+
+    @Override
+    public void streamExport(Integer userId, int fetchSize, Consumer<List<BookmarkExportDto>> chunkConsumer) {
+        Session session = entityManager.unwrap(Session.class);
+        // the tag ids come from an index-only probe of the bookmark_tags primary key per row,
+        // which keeps the rows in created_at order without sorting or grouping the whole collection
+        String sql = inspect(session,
+                "SELECT b.id, b.url, b.title, b.description, b.favicon_url, b.created_at, b.updated_at, " +
+                        "array(SELECT bt.tag_id FROM bookmark_tags bt " +
+                        "WHERE bt.user_id = b.user_id AND bt.bookmark_id = b.id ORDER BY bt.tag_id) " +
+                        "FROM bookmarks b WHERE b.user_id = ? ORDER BY b.created_at, b.id");
+        session.doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                statement.setFetchSize(fetchSize);
+                statement.setInt(1, userId);
+                try (ResultSet rows = statement.executeQuery()) {
+                    List<BookmarkExportDto> chunk = new ArrayList<>(fetchSize);
+                    while (rows.next()) {
+                        chunk.add(new BookmarkExportDto(
+                                rows.getInt(1),
+                                rows.getString(2),
+                                rows.getString(3),
+                                rows.getString(4),
+                                rows.getString(5),
+                                rows.getObject(6, LocalDateTime.class),
+                                rows.getObject(7, LocalDateTime.class),
+                                Arrays.asList((Integer[]) rows.getArray(8).getArray())));
+                        if (chunk.size() == fetchSize) {
+                            chunkConsumer.accept(chunk);
+                            chunk = new ArrayList<>(fetchSize);
+                        }
+                    }
+                    if (!chunk.isEmpty()) {
+                        chunkConsumer.accept(chunk);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Statements of JDBC work bypass hibernate's statement inspector, they go through it here so they are counted
+     * per request and sampled like all others
+     */
+    private static String inspect(Session session, String sql) {
+        StatementInspector inspector = session.getSessionFactory().unwrap(SessionFactoryImplementor.class)
+                .getSessionFactoryOptions().getStatementInspector();
+        return inspector != null ? inspector.inspect(sql) : sql;
+    }
+}
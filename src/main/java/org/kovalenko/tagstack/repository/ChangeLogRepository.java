@@ -0,0 +1,28 @@
+package org.kovalenko.tagstack.repository;
+
+import org.kovalenko.tagstack.entity.ChangeLogEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ChangeLogRepository extends JpaRepository<ChangeLogEntry, Long> {
+
+    /**
+     * Changes after the position (txId, id) in commit-safe order. Only transactions older than every running one
+     * are read: their set of rows is final, so a position once returned never gets rows inserted before it.
+     */
+    @Query(value = "SELECT c.* FROM change_log c " +
+            "WHERE c.user_id = :userId " +
+            "AND (c.tx_id > :txId OR (c.tx_id = :txId AND c.id > :id)) " +
+            "AND c.tx_id < pg_snapshot_xmin(pg_current_snapshot())::text::bigint " +
+            "ORDER BY c.tx_id, c.id " +
+            "LIMIT :limit", nativeQuery = true)
+    List<ChangeLogEntry> findChangesAfter(@Param("userId") Integer userId,
+                                          @Param("txId") long txId,
+                                          @Param("id") long id,
+                                          @Param("limit") int limit);
+}
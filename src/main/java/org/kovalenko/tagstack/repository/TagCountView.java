@@ -0,0 +1,10 @@
+package org.kovalenko.tagstack.repository;
+
+/**
+ * Bookmark counts of one tag: directly tagged and anywhere in its subtree
+ */
+public interface TagCountView {
+    Integer getTagId();
+    long getDirectCount();
+    long getSubtreeCount();
+}
@@ -1,15 +1,158 @@
 package org.kovalenko.tagstack.repository;
 
+import jakarta.persistence.QueryHint;
+import org.kovalenko.tagstack.dto.TagNodeDto;
 import org.kovalenko.tagstack.entity.Tag;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
+
+import static org.hibernate.jpa.HibernateHints.HINT_NATIVE_SPACES;
 
 @Repository
-public interface TagRepository extends JpaRepository<Tag, Integer> {
+public interface TagRepository extends JpaRepository<Tag, Integer>, TagRepositoryCustom {
     List<Tag> findAllByUserId(Integer userId);
     List<Tag> findAllByNameAndUserId(String name, Integer userId);
-    Optional<Tag> findByIdAndUserId(Integer id, Integer userId);
+
+    @Query("SELECT new org.kovalenko.tagstack.dto.TagNodeDto(t.id, t.parent.id, t.name, t.path) FROM Tag t WHERE t.userId = :userId")
+    List<TagNodeDto> findTagNodesByUserId(@Param("userId") Integer userId);
+
+    @Query("SELECT new org.kovalenko.tagstack.dto.TagNodeDto(t.id, t.parent.id, t.name, t.path) FROM Tag t " +
+            "WHERE t.userId = :userId AND t.id IN :ids")
+    List<TagNodeDto> findTagNodesByUserIdAndIdIn(@Param("userId") Integer userId, @Param("ids") Collection<Integer> ids);
+
+    /**
+     * Bookmarks per tag, read from bookmark_tags alone; tags without bookmarks are left out
+     */
+    @Query(value = "SELECT bt.tag_id AS tagId, count(*) AS usageCount " +
+            "FROM bookmark_tags bt " +
+            "WHERE bt.user_id = :userId " +
+            "GROUP BY bt.tag_id", nativeQuery = true)
+    List<TagUsageView> countUsagesByTag(@Param("userId") Integer userId);
+
+    /**
+     * Counts every bookmark_tags row once for each ancestor on its tag's path, so subtree counts
+     * come out of one aggregate without walking the tree
+     */
+    @Query(value = "SELECT cast(a.id AS int) AS tagId, " +
+            "count(*) FILTER (WHERE cast(a.id AS int) = t.id) AS directCount, " +
+            "count(DISTINCT bt.bookmark_id) AS subtreeCount " +
+            "FROM bookmark_tags bt " +
+            "JOIN tags t ON t.id = bt.tag_id " +
+            "CROSS JOIN LATERAL unnest(string_to_array(trim(BOTH '/' FROM t.path), '/')) AS a(id) " +
+            "WHERE bt.user_id = :userId AND t.user_id = :userId " +
+            "GROUP BY a.id", nativeQuery = true)
+    List<TagCountView> countBookmarksByTag(@Param("userId") Integer userId);
+
+    /**
+     * Same as {@link #countBookmarksByTag} restricted to the bookmarks matching a to_tsquery expression
+     */
+    @Query(value = "SELECT cast(a.id AS int) AS tagId, " +
+            "count(*) FILTER (WHERE cast(a.id AS int) = t.id) AS directCount, " +
+            "count(DISTINCT bt.bookmark_id) AS subtreeCount " +
+            "FROM bookmark_tags bt " +
+            "JOIN tags t ON t.id = bt.tag_id " +
+            "JOIN bookmarks b ON b.user_id = bt.user_id AND b.id = bt.bookmark_id " +
+            "CROSS JOIN LATERAL unnest(string_to_array(trim(BOTH '/' FROM t.path), '/')) AS a(id) " +
+            "WHERE bt.user_id = :userId AND t.user_id = :userId AND b.user_id = :userId " +
+            "AND b.search_vector @@ to_tsquery('simple', :query) " +
+            "GROUP BY a.id", nativeQuery = true)
+    List<TagCountView> countSearchedBookmarksByTag(@Param("userId") Integer userId, @Param("query") String query);
+
+    /**
+     * The tag and all its descendants, found by path prefix
+     */
+    @Query("SELECT new org.kovalenko.tagstack.dto.TagNodeDto(t.id, t.parent.id, t.name, t.path) FROM Tag t " +
+            "WHERE t.userId = :userId AND t.path LIKE CONCAT(:path, '%')")
+    List<TagNodeDto> findSubtreeNodes(@Param("userId") Integer userId, @Param("path") String path);
+
+    /**
+     * Deletes the tag with its whole subtree in one statement, bookmark_tags rows go with the foreign key cascade.
+     * A native statement makes hibernate clear every second level cache region unless it names the tables it
+     * writes, with the native spaces hint only the tag regions are cleared.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "tags"))
+    @Query(value = "DELETE FROM tags WHERE user_id = :userId " +
+            "AND path LIKE (SELECT r.path FROM tags r WHERE r.id = :id AND r.user_id = :userId) || '%'",
+            nativeQuery = true)
+    int deleteSubtree(@Param("userId") Integer userId, @Param("id") Integer id);
+
+    /**
+     * Moves a whole subtree in one statement by replacing the path prefix of the tag and all its descendants
+     */
+    @Modifying(flushAutomatically = true)
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "tags"))
+    @Query(value = "UPDATE tags SET path = :newPath || substring(path from char_length(:oldPath) + 1) " +
+            "WHERE user_id = :userId AND path LIKE :oldPath || '%'", nativeQuery = true)
+    int rewriteSubtreePaths(@Param("userId") Integer userId,
+                            @Param("oldPath") String oldPath,
+                            @Param("newPath") String newPath);
+
+    /**
+     * Gives the tag to every bookmark carrying fromTagId, bookmarks that already have it are skipped
+     */
+    @Modifying(flushAutomatically = true)
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "bookmark_tags"))
+    @Query(value = "INSERT INTO bookmark_tags (user_id, bookmark_id, tag_id) " +
+            "SELECT bt.user_id, bt.bookmark_id, :toTagId FROM bookmark_tags bt " +
+            "WHERE bt.user_id = :userId AND bt.tag_id = :fromTagId " +
+            "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int copyTagLinks(@Param("userId") Integer userId,
+                     @Param("fromTagId") Integer fromTagId,
+                     @Param("toTagId") Integer toTagId);
+
+    /**
+     * Removes the tag from all its bookmarks, returns the number of bookmarks that lost it
+     */
+    @Modifying(flushAutomatically = true)
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "bookmark_tags"))
+    @Query(value = "DELETE FROM bookmark_tags WHERE user_id = :userId AND tag_id = :tagId", nativeQuery = true)
+    int deleteAllTagLinks(@Param("userId") Integer userId, @Param("tagId") Integer tagId);
+
+    /**
+     * Gives the tag to those of the bookmarks the user has, bookmarks that already have it are skipped
+     */
+    @Modifying(flushAutomatically = true)
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "bookmark_tags"))
+    @Query(value = "INSERT INTO bookmark_tags (user_id, bookmark_id, tag_id) " +
+            "SELECT b.user_id, b.id, :tagId FROM bookmarks b " +
+            "WHERE b.user_id = :userId AND b.id IN (:bookmarkIds) " +
+            "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int insertTagLinks(@Param("userId") Integer userId,
+                       @Param("tagId") Integer tagId,
+                       @Param("bookmarkIds") Collection<Integer> bookmarkIds);
+
+    @Modifying(flushAutomatically = true)
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "bookmark_tags"))
+    @Query(value = "DELETE FROM bookmark_tags " +
+            "WHERE user_id = :userId AND tag_id = :tagId AND bookmark_id IN (:bookmarkIds)", nativeQuery = true)
+    int deleteTagLinks(@Param("userId") Integer userId,
+                       @Param("tagId") Integer tagId,
+                       @Param("bookmarkIds") Collection<Integer> bookmarkIds);
+
+    /**
+     * Moves the children of the tag to another parent, their paths are left to {@link #rewriteSubtreePaths}
+     */
+    @Modifying(flushAutomatically = true)
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "tags"))
+    @Query(value = "UPDATE tags SET parent_id = :toParentId WHERE user_id = :userId AND parent_id = :fromParentId",
+            nativeQuery = true)
+    int reparentChildren(@Param("userId") Integer userId,
+                         @Param("fromParentId") Integer fromParentId,
+                         @Param("toParentId") Integer toParentId);
+
+    /**
+     * Deletes the tag alone, it must not have children any more
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "tags"))
+    @Query(value = "DELETE FROM tags WHERE user_id = :userId AND id = :id", nativeQuery = true)
+    int deleteTag(@Param("userId") Integer userId, @Param("id") Integer id);
 }
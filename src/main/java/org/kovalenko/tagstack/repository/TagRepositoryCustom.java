@@ -0,0 +1,29 @@
+package org.kovalenko.tagstack.repository;
+
+import org.kovalenko.tagstack.entity.Tag;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Ownership lookups of tags by id. They load through the second level cache instead of querying by user,
+ * a tag of another user reads as missing. Also the batch move, whose statement takes arrays.
+ */
+public interface TagRepositoryCustom {
+
+    Optional<Tag> findByIdAndUserId(Integer id, Integer userId);
+
+    /**
+     * The user's tags among the ids, missing and foreign ids are left out; only cache misses reach the database,
+     * as one batch
+     */
+    List<Tag> findAllByIdInAndUserId(Collection<Integer> ids, Integer userId);
+
+    /**
+     * Moves every tag at one of the old paths under the parent in one statement: the tag gets the parent and its
+     * new path, its descendants the new path as prefix. A tag below two moved tags follows the nearer one.
+     * Returns the number of tags whose path was rewritten.
+     */
+    int moveSubtrees(Integer userId, Integer parentId, List<String> oldPaths, List<String> newPaths);
+}
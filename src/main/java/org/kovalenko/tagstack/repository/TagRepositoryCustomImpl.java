@@ -0,0 +1,63 @@
+package org.kovalenko.tagstack.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.kovalenko.tagstack.entity.Tag;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static org.hibernate.jpa.HibernateHints.HINT_NATIVE_SPACES;
+
+public class TagRepositoryCustomImpl implements TagRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Optional<Tag> findByIdAndUserId(Integer id, Integer userId) {
+        return Optional.ofNullable(entityManager.find(Tag.class, id))
+                .filter(tag -> tag.getUserId().equals(userId));
+    }
+
+    @Override
+    public List<Tag> findAllByIdInAndUserId(Collection<Integer> ids, Integer userId) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        List<Tag> tags = entityManager.unwrap(Session.class)
+                .byMultipleIds(Tag.class)
+                .multiLoad(new ArrayList<>(ids));
+        return tags.stream()
+                .filter(tag -> tag != null && tag.getUserId().equals(userId))
+                .toList();
+    }
+
+    @Override
+    public int moveSubtrees(Integer userId, Integer parentId, List<String> oldPaths, List<String> newPaths) {
+        if (oldPaths.isEmpty()) {
+            return 0;
+        }
+        // distinct on keeps the longest, nearest, old path a tag falls under
+        return entityManager.createNativeQuery(
+                        "UPDATE tags t SET " +
+                                "parent_id = CASE WHEN t.path = m.old_path THEN cast(:parentId AS int) " +
+                                "ELSE t.parent_id END, " +
+                                "path = m.new_path || substring(t.path from char_length(m.old_path) + 1) " +
+                                "FROM (SELECT DISTINCT ON (d.id) d.id, p.old_path, p.new_path FROM tags d " +
+                                "JOIN unnest(cast(:oldPaths AS text[]), cast(:newPaths AS text[])) " +
+                                "AS p(old_path, new_path) ON d.path LIKE p.old_path || '%' " +
+                                "WHERE d.user_id = :userId " +
+                                "ORDER BY d.id, char_length(p.old_path) DESC) m " +
+                                "WHERE t.user_id = :userId AND t.id = m.id")
+                .setHint(HINT_NATIVE_SPACES, "tags")
+                .setParameter("userId", userId)
+                .setParameter("parentId", parentId)
+                .setParameter("oldPaths", oldPaths.toArray(new String[0]))
+                .setParameter("newPaths", newPaths.toArray(new String[0]))
+                .executeUpdate();
+    }
+}
@@ -0,0 +1,9 @@
+package org.kovalenko.tagstack.repository;
+
+/**
+ * Number of bookmarks directly tagged with one tag
+ */
+public interface TagUsageView {
+    Integer getTagId();
+    long getUsageCount();
+}
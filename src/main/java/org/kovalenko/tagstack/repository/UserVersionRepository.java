@@ -0,0 +1,27 @@
+package org.kovalenko.tagstack.repository;
+
+import jakarta.persistence.QueryHint;
+import org.kovalenko.tagstack.entity.UserVersion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import static org.hibernate.jpa.HibernateHints.HINT_NATIVE_SPACES;
+
+@Repository
+public interface UserVersionRepository extends JpaRepository<UserVersion, Integer> {
+
+    /**
+     * Increments the user's version, creating it on the first write; the row stays locked until commit.
+     * Runs on every write, the native spaces hint keeps it from clearing the second level cache.
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "user_versions"))
+    @Query(value = "INSERT INTO user_versions (user_id, version, updated_at) VALUES (:userId, 1, now()) " +
+            "ON CONFLICT (user_id) DO UPDATE SET version = user_versions.version + 1, updated_at = now()",
+            nativeQuery = true)
+    void bump(@Param("userId") Integer userId);
+}
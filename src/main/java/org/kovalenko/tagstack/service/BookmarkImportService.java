@@ -0,0 +1,10 @@
+package org.kovalenko.tagstack.service;
+
+import org.kovalenko.tagstack.dto.BookmarkImportResultDto;
+
+import java.io.InputStream;
+
+public interface BookmarkImportService {
+    BookmarkImportResultDto importJson(InputStream input, Integer userId);
+    BookmarkImportResultDto importNetscape(InputStream input, Integer userId);
+}
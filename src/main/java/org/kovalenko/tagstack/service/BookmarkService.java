@@ -1,18 +1,32 @@
 package org.kovalenko.tagstack.service;
 
+import org.kovalenko.tagstack.dto.BookmarkCompactPageDto;
+import org.kovalenko.tagstack.dto.BookmarkPageDto;
 import org.kovalenko.tagstack.dto.BookmarkRequestDto;
 import org.kovalenko.tagstack.dto.BookmarkResponseDto;
+import org.kovalenko.tagstack.dto.BookmarkTagQueryDto;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface BookmarkService {
-    List<BookmarkResponseDto> getAll(Integer userId);
+    BookmarkPageDto getAll(Integer userId, Integer limit, String after);
+    BookmarkCompactPageDto getAllCompact(Integer userId, Integer limit, String after, String fields);
+    void streamAll(Integer userId, Consumer<List<BookmarkResponseDto>> chunkConsumer);
     List<BookmarkResponseDto> getByTitle(String title, Integer userId);
+    List<BookmarkResponseDto> search(String query, Integer userId, Integer limit, Integer offset);
     BookmarkResponseDto getById(Integer id, Integer userId);
+    List<BookmarkResponseDto> getAllByIds(Collection<Integer> ids, Integer userId);
     List<BookmarkResponseDto> getUrlContains(String urlPart, Integer userId);
     List<BookmarkResponseDto> getByTag(Integer tagId, Integer userId);
+    BookmarkPageDto getByTags(BookmarkTagQueryDto query, Integer userId, Integer limit, String after);
     BookmarkResponseDto create(BookmarkRequestDto dto, Integer userId);
     BookmarkResponseDto update(BookmarkRequestDto dto, Integer id, Integer userId);
     void deleteById(Integer id, Integer userId);
     void deleteByUrl(String url, Integer userId);
+    int deleteByIds(Collection<Integer> ids, Integer userId);
+    int deleteByTag(Integer tagId, boolean includeDescendants, Integer userId);
+    int deleteByCreatedAt(LocalDateTime from, LocalDateTime to, Integer userId);
 }
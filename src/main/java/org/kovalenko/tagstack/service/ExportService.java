@@ -0,0 +1,18 @@
+package org.kovalenko.tagstack.service;
+
+import org.kovalenko.tagstack.cache.TagForest;
+import org.kovalenko.tagstack.dto.BookmarkExportDto;
+
+import java.util.List;
+
+public interface ExportService {
+    void export(Integer userId, ExportSink sink);
+
+    /**
+     * Receiver of an export, gets the tag forest first and then the bookmarks chunk by chunk
+     */
+    interface ExportSink {
+        void tags(TagForest forest);
+        void bookmarks(List<BookmarkExportDto> chunk);
+    }
+}
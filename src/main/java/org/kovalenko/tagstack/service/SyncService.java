@@ -0,0 +1,7 @@
+package org.kovalenko.tagstack.service;
+
+import org.kovalenko.tagstack.dto.SyncDto;
+
+public interface SyncService {
+    SyncDto getChanges(Integer userId, String since, Integer limit);
+}
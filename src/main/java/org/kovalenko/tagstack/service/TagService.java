@@ -1,15 +1,27 @@
 package org.kovalenko.tagstack.service;
 
+import org.kovalenko.tagstack.dto.TagBatchResultDto;
+import org.kovalenko.tagstack.dto.TagFacetDto;
 import org.kovalenko.tagstack.dto.TagRequestDto;
 import org.kovalenko.tagstack.dto.TagResponseDto;
+import org.kovalenko.tagstack.dto.TagSuggestionDto;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface TagService {
     List<TagResponseDto> getAll(Integer userId);
+    void streamAll(Integer userId, Consumer<List<TagResponseDto>> chunkConsumer);
     List<TagResponseDto> getByName(String name, Integer userId);
+    List<TagSuggestionDto> suggest(String prefix, Integer userId, Integer limit);
     TagResponseDto getById(Integer id, Integer userId);
+    List<TagFacetDto> getFacets(Integer userId, String query);
     TagResponseDto create(TagRequestDto dto, Integer userId);
     TagResponseDto update(TagRequestDto dto, Integer id, Integer userId);
     void delete(Integer id, Integer userId);
+    TagBatchResultDto merge(Integer id, Integer targetId, Integer userId);
+    TagBatchResultDto move(Collection<Integer> ids, Integer parentId, Integer userId);
+    TagBatchResultDto addToBookmarks(Integer id, Collection<Integer> bookmarkIds, Integer userId);
+    TagBatchResultDto removeFromBookmarks(Integer id, Collection<Integer> bookmarkIds, Integer userId);
 }
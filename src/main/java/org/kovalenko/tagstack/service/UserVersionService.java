@@ -0,0 +1,8 @@
+package org.kovalenko.tagstack.service;
+
+import org.kovalenko.tagstack.dto.UserVersionDto;
+
+public interface UserVersionService {
+    UserVersionDto get(Integer userId);
+    void bump(Integer userId);
+}
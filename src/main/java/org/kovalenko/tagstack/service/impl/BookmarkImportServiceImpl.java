@@ -0,0 +1,359 @@
+package org.kovalenko.tagstack.service.impl;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.kovalenko.tagstack.dto.BookmarkImportErrorDto;
+import org.kovalenko.tagstack.dto.BookmarkImportItemDto;
+import org.kovalenko.tagstack.dto.BookmarkImportResultDto;
+import org.kovalenko.tagstack.dto.BookmarkTagLinkDto;
+import org.kovalenko.tagstack.dto.TagNodeDto;
+import org.kovalenko.tagstack.entity.Bookmark;
+import org.kovalenko.tagstack.entity.Tag;
+import org.kovalenko.tagstack.event.BookmarksCreatedEvent;
+import org.kovalenko.tagstack.event.TagsChangedEvent;
+import org.kovalenko.tagstack.repository.BookmarkRepository;
+import org.kovalenko.tagstack.repository.TagRepository;
+import org.kovalenko.tagstack.service.BookmarkImportService;
+import org.kovalenko.tagstack.service.UserVersionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+public class BookmarkImportServiceImpl implements BookmarkImportService {
+    private static final Logger log = LoggerFactory.getLogger(BookmarkImportServiceImpl.class);
+    private static final int CHUNK_SIZE = 500;
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    private final BookmarkRepository bookmarkRepository;
+    private final TagRepository tagRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final UserVersionService userVersionService;
+
+    @Override
+    public BookmarkImportResultDto importJson(InputStream input, Integer userId) {
+        if (userId == null) {
+            throw new IllegalArgumentException("userId should not be null");
+        }
+
+        ImportSession session = new ImportSession(userId);
+        try (JsonParser parser = objectMapper.createParser(input)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("import should be a JSON array of bookmarks");
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.END_ARRAY) {
+                if (token != JsonToken.START_OBJECT) {
+                    session.invalid("bookmark should be a JSON object");
+                    parser.skipChildren();
+                    continue;
+                }
+                // read as a tree first: well-formed JSON that doesn't map, e.g. "tags": "dev", fails only the item
+                JsonNode node = parser.readValueAsTree();
+                BookmarkImportItemDto item;
+                try {
+                    item = objectMapper.treeToValue(node, BookmarkImportItemDto.class);
+                } catch (JsonProcessingException e) {
+                    session.invalid(wrongType(e));
+                    continue;
+                }
+                session.add(item);
+            }
+        } catch (IOException e) {
+            // the parser can't resynchronize after broken JSON, keep what was read so far
+            session.malformed(e);
+        }
+        return session.finish();
+    }
+
+    @Override
+    public BookmarkImportResultDto importNetscape(InputStream input, Integer userId) {
+        if (userId == null) {
+            throw new IllegalArgumentException("userId should not be null");
+        }
+
+        ImportSession session = new ImportSession(userId);
+        try {
+            NetscapeBookmarkParser.parse(new InputStreamReader(input, StandardCharsets.UTF_8), session::add);
+        } catch (IOException e) {
+            session.malformed(e);
+        }
+        return session.finish();
+    }
+
+    /**
+     * Names the field that didn't map, not the DTO class in the exception message
+     */
+    private static String wrongType(JsonProcessingException e) {
+        if (e instanceof JsonMappingException mapping && !mapping.getPath().isEmpty()) {
+            String field = mapping.getPath().stream()
+                    .map(reference -> reference.getFieldName() != null
+                            ? reference.getFieldName() : String.valueOf(reference.getIndex()))
+                    .collect(Collectors.joining("."));
+            return "bookmark field " + field + " has the wrong type";
+        }
+        return "bookmark has a field of the wrong type";
+    }
+
+    private record IndexedItem(int index, BookmarkImportItemDto item, byte[] urlHash) {
+    }
+
+    /**
+     * Collects items into chunks, each chunk resolves its tags and inserts its bookmarks in own transactions,
+     * so a failure only costs the items of that chunk
+     */
+    private class ImportSession {
+        private final Integer userId;
+        private final List<IndexedItem> chunk = new ArrayList<>(CHUNK_SIZE);
+        private final List<BookmarkImportErrorDto> errors = new ArrayList<>();
+        // "parentId/name" -> tag, root tags use an empty parent
+        private Map<String, TagNodeDto> tagsByKey;
+        private int index;
+        private int imported;
+
+        ImportSession(Integer userId) {
+            this.userId = userId;
+        }
+
+        void add(BookmarkImportItemDto item) {
+            int itemIndex = index++;
+            if (item.getUrl() == null || item.getUrl().isBlank()) {
+                fail(new IndexedItem(itemIndex, item, null), "url should not be null or blank");
+                return;
+            }
+
+            chunk.add(new IndexedItem(itemIndex, item, UrlNormalizer.hash(item.getUrl())));
+            if (chunk.size() == CHUNK_SIZE) {
+                flush();
+            }
+        }
+
+        void invalid(String message) {
+            errors.add(BookmarkImportErrorDto.builder()
+                    .index(index++)
+                    .message(message)
+                    .build());
+        }
+
+        void malformed(IOException e) {
+            errors.add(BookmarkImportErrorDto.builder()
+                    .index(index)
+                    .message("malformed input, import stopped: " + e.getMessage())
+                    .build());
+        }
+
+        BookmarkImportResultDto finish() {
+            flush();
+            return BookmarkImportResultDto.builder()
+                    .imported(imported)
+                    .failed(errors.size())
+                    .errors(errors)
+                    .build();
+        }
+
+        private void flush() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            List<IndexedItem> items = skipDuplicates(chunk);
+            chunk.clear();
+            if (items.isEmpty()) {
+                return;
+            }
+
+            Map<IndexedItem, Set<Integer>> tagIds;
+            try {
+                tagIds = transactionTemplate.execute(status -> resolveTags(items));
+            } catch (RuntimeException e) {
+                // the tags created by this chunk were rolled back
+                log.warn("creating the tags of {} imported bookmarks of user {} failed", items.size(), userId, e);
+                tagsByKey = null;
+                items.forEach(item -> fail(item, "tags could not be created"));
+                return;
+            }
+
+            try {
+                transactionTemplate.executeWithoutResult(status -> insert(items, tagIds));
+                imported += items.size();
+            } catch (RuntimeException e) {
+                // retry one by one to find out which items broke the batch
+                for (IndexedItem item : items) {
+                    try {
+                        transactionTemplate.executeWithoutResult(status -> insert(List.of(item), tagIds));
+                        imported++;
+                    } catch (RuntimeException itemException) {
+                        fail(item, failure(item, itemException));
+                    }
+                }
+            }
+        }
+
+        /**
+         * Drops the items whose canonical url the user already has or that repeat an earlier item of the chunk,
+         * one url_hash lookup per chunk; earlier chunks are committed, so the lookup covers them too
+         */
+        private List<IndexedItem> skipDuplicates(List<IndexedItem> items) {
+            List<byte[]> urlHashes = items.stream().map(IndexedItem::urlHash).toList();
+            Set<ByteBuffer> seen = new HashSet<>();
+            for (byte[] urlHash : bookmarkRepository.findUrlHashes(userId, urlHashes)) {
+                seen.add(ByteBuffer.wrap(urlHash));
+            }
+
+            List<IndexedItem> result = new ArrayList<>(items.size());
+            for (IndexedItem item : items) {
+                if (seen.add(ByteBuffer.wrap(item.urlHash()))) {
+                    result.add(item);
+                } else {
+                    fail(item, "bookmark already exists with url: " + item.item().getUrl());
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Resolves every tag path of the chunk, creating missing tags, the user's tags are read only once per import
+         */
+        private Map<IndexedItem, Set<Integer>> resolveTags(List<IndexedItem> items) {
+            if (tagsByKey == null) {
+                tagsByKey = new HashMap<>();
+                for (TagNodeDto tag : tagRepository.findTagNodesByUserId(userId)) {
+                    tagsByKey.putIfAbsent(key(tag.getParentId(), tag.getName()), tag);
+                }
+            }
+
+            List<TagNodeDto> created = new ArrayList<>();
+            Map<IndexedItem, Set<Integer>> result = new HashMap<>();
+            for (IndexedItem item : items) {
+                Set<Integer> ids = new HashSet<>();
+                for (String path : Optional.ofNullable(item.item().getTags()).orElse(List.of())) {
+                    TagNodeDto tag = null;
+                    for (String segment : path.split("/")) {
+                        String name = segment.trim().toLowerCase();
+                        if (name.isEmpty()) {
+                            continue;
+                        }
+                        Integer parentId = tag != null ? tag.getId() : null;
+                        TagNodeDto existing = tagsByKey.get(key(parentId, name));
+                        if (existing == null) {
+                            existing = createTag(tag, name);
+                            tagsByKey.put(key(parentId, name), existing);
+                            created.add(existing);
+                        }
+                        tag = existing;
+                    }
+                    if (tag != null) {
+                        ids.add(tag.getId());
+                    }
+                }
+                result.put(item, ids);
+            }
+
+            if (!created.isEmpty()) {
+                userVersionService.bump(userId);
+                eventPublisher.publishEvent(new TagsChangedEvent(userId, created, List.of()));
+            }
+            return result;
+        }
+
+        private TagNodeDto createTag(TagNodeDto parent, String name) {
+            Tag tag = tagRepository.save(Tag.builder()
+                    .userId(userId)
+                    .name(name)
+                    .parent(parent != null ? tagRepository.getReferenceById(parent.getId()) : null)
+                    .build());
+            String parentPath = parent != null && parent.getPath() != null ? parent.getPath() : "/";
+            tag.setPath(parentPath + tag.getId() + "/");
+            return new TagNodeDto(tag.getId(), parent != null ? parent.getId() : null, name, tag.getPath());
+        }
+
+        private void insert(List<IndexedItem> items, Map<IndexedItem, Set<Integer>> tagIds) {
+            List<Bookmark> bookmarks = new ArrayList<>(items.size());
+            for (IndexedItem item : items) {
+                bookmarks.add(Bookmark.builder()
+                        .userId(userId)
+                        .url(item.item().getUrl())
+                        .urlHash(item.urlHash())
+                        .title(item.item().getTitle())
+                        .description(item.item().getDescription())
+                        .build());
+            }
+            // ids come from the sequence in blocks, so these inserts go out as jdbc batches
+            bookmarkRepository.saveAll(bookmarks);
+
+            List<BookmarkTagLinkDto> links = new ArrayList<>();
+            for (int i = 0; i < items.size(); i++) {
+                for (Integer tagId : tagIds.getOrDefault(items.get(i), Set.of())) {
+                    links.add(new BookmarkTagLinkDto(bookmarks.get(i).getId(), tagId));
+                }
+            }
+            bookmarkRepository.insertTagLinks(userId, links);
+            userVersionService.bump(userId);
+
+            List<BookmarksCreatedEvent.Created> incomplete = new ArrayList<>();
+            for (Bookmark bookmark : bookmarks) {
+                if (BookmarkServiceImpl.lacksMetadata(bookmark)) {
+                    incomplete.add(new BookmarksCreatedEvent.Created(bookmark.getId(), bookmark.getUrl()));
+                }
+            }
+            if (!incomplete.isEmpty()) {
+                eventPublisher.publishEvent(new BookmarksCreatedEvent(userId, incomplete));
+            }
+        }
+
+        /**
+         * A fixed message for the failure of an item, the exception text names tables and constraints
+         */
+        private String failure(IndexedItem item, RuntimeException e) {
+            if (e instanceof DataIntegrityViolationException) {
+                log.debug("importing bookmark {} of user {} failed", item.index(), userId, e);
+                return isUniqueViolation(e) ? "bookmark already exists with url: " + item.item().getUrl()
+                        : "bookmark has a value that can't be stored";
+            }
+            log.warn("importing bookmark {} of user {} failed", item.index(), userId, e);
+            return "bookmark could not be saved";
+        }
+
+        private void fail(IndexedItem item, String message) {
+            errors.add(BookmarkImportErrorDto.builder()
+                    .index(item.index())
+                    .url(item.item().getUrl())
+                    .message(message)
+                    .build());
+        }
+
+        private static boolean isUniqueViolation(Throwable e) {
+            for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                if (cause instanceof DuplicateKeyException
+                        || cause instanceof SQLException sql && UNIQUE_VIOLATION.equals(sql.getSQLState())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private String key(Integer parentId, String name) {
+            return (parentId != null ? parentId : "") + "/" + name;
+        }
+    }
+}
@@ -1,36 +1,170 @@
 package org.kovalenko.tagstack.service.impl;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import org.kovalenko.tagstack.cache.TagForest;
+import org.kovalenko.tagstack.cache.TagForestCache;
+import org.kovalenko.tagstack.dto.BookmarkCompactDto;
+import org.kovalenko.tagstack.dto.BookmarkCompactPageDto;
+import org.kovalenko.tagstack.dto.BookmarkPageDto;
 import org.kovalenko.tagstack.dto.BookmarkRequestDto;
 import org.kovalenko.tagstack.dto.BookmarkResponseDto;
+import org.kovalenko.tagstack.dto.BookmarkTagLinkDto;
+import org.kovalenko.tagstack.dto.BookmarkTagQueryDto;
+import org.kovalenko.tagstack.dto.TagCompactDto;
 import org.kovalenko.tagstack.dto.TagResponseDto;
 import org.kovalenko.tagstack.entity.Bookmark;
 import org.kovalenko.tagstack.entity.Tag;
+import org.kovalenko.tagstack.event.BookmarksCreatedEvent;
 import org.kovalenko.tagstack.repository.BookmarkRepository;
 import org.kovalenko.tagstack.repository.TagRepository;
 import org.kovalenko.tagstack.service.BookmarkService;
+import org.kovalenko.tagstack.service.UserVersionService;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class BookmarkServiceImpl implements BookmarkService {
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int STREAM_CHUNK_SIZE = 500;
+    private static final int MAX_BULK_IDS = 10000;
+    private static final Set<String> COMPACT_FIELDS = Set.of(
+            "id", "url", "title", "description", "createdAt", "updatedAt", "tags");
+
     private final BookmarkRepository bookmarkRepository;
     private final TagRepository tagRepository;
+    private final EntityManager entityManager;
+    private final TagForestCache tagForestCache;
+    private final MeterRegistry meterRegistry;
+    private final UserVersionService userVersionService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
-    public List<BookmarkResponseDto> getAll(Integer userId) {
+    public BookmarkPageDto getAll(Integer userId, Integer limit, String after) {
         if (userId == null) {
             throw new IllegalArgumentException("userId should not be null");
         }
+        int pageSize = resolvePageSize(limit);
+
+        // fetch one extra row to find out whether there is a next page
+        Limit fetchLimit = Limit.of(pageSize + 1);
+        List<Bookmark> bookmarks;
+        if (after == null || after.isBlank()) {
+            bookmarks = bookmarkRepository.findFirstPage(userId, fetchLimit);
+        } else {
+            Bookmark position = decodeCursor(after);
+            bookmarks = bookmarkRepository.findPageAfter(userId, position.getCreatedAt(), position.getId(), fetchLimit);
+        }
 
-        return bookmarkRepository.findAllByUserId(userId)
-                .stream()
-                .map(this::convertToResponseDto)
-                .collect(Collectors.toList());
+        return toPage(bookmarks, pageSize, userId);
+    }
+
+    @Override
+    public BookmarkCompactPageDto getAllCompact(Integer userId, Integer limit, String after, String fields) {
+        if (userId == null) {
+            throw new IllegalArgumentException("userId should not be null");
+        }
+        int pageSize = resolvePageSize(limit);
+        Set<String> selected = resolveFields(fields);
+
+        Limit fetchLimit = Limit.of(pageSize + 1);
+        List<BookmarkCompactDto> bookmarks;
+        if (after == null || after.isBlank()) {
+            bookmarks = bookmarkRepository.findFirstCompactPage(userId, fetchLimit);
+        } else {
+            Bookmark position = decodeCursor(after);
+            bookmarks = bookmarkRepository.findCompactPageAfter(
+                    userId, position.getCreatedAt(), position.getId(), fetchLimit);
+        }
+
+        String nextCursor = null;
+        if (bookmarks.size() > pageSize) {
+            bookmarks = bookmarks.subList(0, pageSize);
+            BookmarkCompactDto last = bookmarks.get(pageSize - 1);
+            nextCursor = encodeCursor(last.getCreatedAt(), last.getId());
+        }
+
+        // the tag dictionary and the bookmark_tags query are skipped unless tags were requested
+        List<TagCompactDto> tags = selected.contains("tags") ? attachTagIds(bookmarks, userId) : null;
+        for (BookmarkCompactDto bookmark : bookmarks) {
+            project(bookmark, selected);
+        }
+
+        return BookmarkCompactPageDto.builder()
+                .items(bookmarks)
+                .tags(tags)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    @Override
+    public BookmarkPageDto getByTags(BookmarkTagQueryDto query, Integer userId, Integer limit, String after) {
+        if (userId == null) {
+            throw new IllegalArgumentException("userId should not be null");
+        }
+        List<Integer> tagIds = Optional.ofNullable(query.getTags()).orElse(List.of());
+        List<Integer> excludeTagIds = Optional.ofNullable(query.getExclude()).orElse(List.of());
+        if (tagIds.isEmpty() && excludeTagIds.isEmpty()) {
+            throw new IllegalArgumentException("tags or exclude should not be empty");
+        }
+        String mode = query.getMode() != null ? query.getMode().toLowerCase() : "all";
+        if (!mode.equals("all") && !mode.equals("any")) {
+            throw new IllegalArgumentException("mode should be all or any");
+        }
+        int pageSize = resolvePageSize(limit);
+
+        Bookmark position = after == null || after.isBlank() ? new Bookmark() : decodeCursor(after);
+        List<Bookmark> bookmarks = bookmarkRepository.findAllByTags(
+                userId,
+                tagIds,
+                mode.equals("all"),
+                excludeTagIds,
+                Boolean.TRUE.equals(query.getIncludeDescendants()),
+                position.getCreatedAt(),
+                position.getId(),
+                pageSize + 1);
+
+        return toPage(bookmarks, pageSize, userId);
+    }
+
+    @Override
+    @Transactional
+    public void streamAll(Integer userId, Consumer<List<BookmarkResponseDto>> chunkConsumer) {
+        if (userId == null) {
+            throw new IllegalArgumentException("userId should not be null");
+        }
+
+        // the forest is resolved once for the whole stream, tag links once per chunk
+        TagForest forest = tagForestCache.get(userId);
+
+        try (Stream<Bookmark> bookmarks = bookmarkRepository.streamAllByUserId(userId)) {
+            Iterator<Bookmark> iterator = bookmarks.iterator();
+            List<Bookmark> chunk = new ArrayList<>(STREAM_CHUNK_SIZE);
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                if (chunk.size() == STREAM_CHUNK_SIZE) {
+                    chunkConsumer.accept(convertToResponseDtos(chunk, userId, forest));
+                    chunk.clear();
+                    // detach everything mapped so far, otherwise the persistence context grows with the collection
+                    entityManager.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                chunkConsumer.accept(convertToResponseDtos(chunk, userId, forest));
+            }
+        }
     }
 
     @Override
@@ -42,10 +176,29 @@ public class BookmarkServiceImpl implements BookmarkService {
             throw new IllegalArgumentException("title should not be null or blank");
         }
 
-        return bookmarkRepository.findAllByTitleContainingIgnoreCaseAndUserId(title, userId)
-                .stream()
-                .map(this::convertToResponseDto)
-                .collect(Collectors.toList());
+        return convertToResponseDtos(bookmarkRepository.findAllByTitleContainingIgnoreCaseAndUserId(title, userId), userId);
+    }
+
+    @Override
+    public List<BookmarkResponseDto> search(String query, Integer userId, Integer limit, Integer offset) {
+        if (userId == null) {
+            throw new IllegalArgumentException("userId should not be null");
+        }
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("query should not be null or blank");
+        }
+        int pageSize = resolvePageSize(limit);
+        if (offset != null && offset < 0) {
+            throw new IllegalArgumentException("offset should not be negative");
+        }
+
+        String tsQuery = SearchQueries.toPrefixTsQuery(query);
+        if (tsQuery.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        return convertToResponseDtos(
+                bookmarkRepository.search(userId, tsQuery, pageSize, offset != null ? offset : 0), userId);
     }
 
     @Override
@@ -55,10 +208,22 @@ public class BookmarkServiceImpl implements BookmarkService {
         }
 
         return bookmarkRepository.findByIdAndUserId(id, userId)
-                .map(this::convertToResponseDto)
+                .map(bookmark -> convertToResponseDto(bookmark, userId))
                 .orElseThrow(() -> new IllegalArgumentException("bookmark not found with id: " + id));
     }
 
+    @Override
+    public List<BookmarkResponseDto> getAllByIds(Collection<Integer> ids, Integer userId) {
+        if (ids == null || userId == null) {
+            throw new IllegalArgumentException("ids and userId should not be null");
+        }
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        return convertToResponseDtos(bookmarkRepository.findAllByIdInAndUserId(ids, userId), userId);
+    }
+
     @Override
     public List<BookmarkResponseDto> getUrlContains(String urlPart, Integer userId) {
         if (userId == null) {
@@ -68,10 +233,7 @@ public class BookmarkServiceImpl implements BookmarkService {
             throw new IllegalArgumentException("urlPart should not be null or blank");
         }
 
-        return bookmarkRepository.findAllByUrlContainingIgnoreCaseAndUserId(urlPart, userId)
-                .stream()
-                .map(this::convertToResponseDto)
-                .collect(Collectors.toList());
+        return convertToResponseDtos(bookmarkRepository.findAllByUrlContainingIgnoreCaseAndUserId(urlPart, userId), userId);
     }
 
     @Override
@@ -84,10 +246,7 @@ public class BookmarkServiceImpl implements BookmarkService {
                 .filter(tag -> tag.getUserId().equals(userId))
                 .orElseThrow(() -> new IllegalArgumentException("tag not found with id: " + tagId));
 
-        return bookmarkRepository.findAllByTagIdAndUserId(tagId, userId)
-                .stream()
-                .map(this::convertToResponseDto)
-                .collect(Collectors.toList());
+        return convertToResponseDtos(bookmarkRepository.findAllByTagIdAndUserId(tagId, userId), userId);
     }
 
     @Override
@@ -101,18 +260,20 @@ public class BookmarkServiceImpl implements BookmarkService {
         }
 
         Bookmark bookmark = convertToEntity(dto, userId);
-
-        if (dto.getTagIds() != null && !dto.getTagIds().isEmpty()) {
-            Set<Tag> tags = dto.getTagIds().stream()
-                    .map(tagId -> tagRepository.findById(tagId)
-                            .filter(tag -> tag.getUserId().equals(userId))
-                            .orElseThrow(() -> new IllegalArgumentException("tag not found with id: " + tagId)))
-                    .collect(Collectors.toSet());
-            bookmark.setTags(tags);
+        if (bookmarkRepository.existsByUrlHashAndUserId(bookmark.getUrlHash(), userId)) {
+            throw new IllegalArgumentException("bookmark already exists with url: " + dto.getUrl());
         }
 
+        Set<Integer> tagIds = resolveTagIds(dto.getTagIds(), userId);
+
         Bookmark savedBookmark = bookmarkRepository.save(bookmark);
-        return convertToResponseDto(savedBookmark);
+        bookmarkRepository.insertTagLinks(userId, toLinks(savedBookmark.getId(), tagIds));
+        userVersionService.bump(userId);
+        if (lacksMetadata(savedBookmark)) {
+            eventPublisher.publishEvent(new BookmarksCreatedEvent(userId,
+                    List.of(new BookmarksCreatedEvent.Created(savedBookmark.getId(), savedBookmark.getUrl()))));
+        }
+        return convertToResponseDto(savedBookmark, userId);
     }
 
     @Override
@@ -128,22 +289,38 @@ public class BookmarkServiceImpl implements BookmarkService {
         Bookmark existingBookmark = bookmarkRepository.findByIdAndUserId(id, userId)
                 .orElseThrow(() -> new IllegalArgumentException("bookmark not found with ID: " + dto.getUrl()));
 
+        // checked before the entity turns dirty, the query would flush it first
+        byte[] urlHash = UrlNormalizer.hash(dto.getUrl());
+        if (bookmarkRepository.existsByUrlHashAndUserIdAndIdNot(urlHash, userId, id)) {
+            throw new IllegalArgumentException("bookmark already exists with url: " + dto.getUrl());
+        }
+
         existingBookmark.setTitle(dto.getTitle());
         existingBookmark.setDescription(dto.getDescription());
         existingBookmark.setUrl(dto.getUrl());
+        existingBookmark.setUrlHash(urlHash);
         existingBookmark.setUpdatedAt(java.time.LocalDateTime.now());
 
+        Bookmark updatedBookmark = bookmarkRepository.save(existingBookmark);
+
         if (dto.getTagIds() != null && !dto.getTagIds().isEmpty()) {
-            Set<Tag> tags = dto.getTagIds().stream()
-                    .map(tagId -> tagRepository.findById(tagId)
-                            .filter(tag -> tag.getUserId().equals(userId))
-                            .orElseThrow(() -> new IllegalArgumentException("Tag not found with id: " + tagId)))
-                    .collect(Collectors.toSet());
-            existingBookmark.setTags(tags);
+            Set<Integer> tagIds = resolveTagIds(dto.getTagIds(), userId);
+
+            // write only the difference to the current links
+            Set<Integer> removed = new HashSet<>();
+            for (BookmarkTagLinkDto link : bookmarkRepository.findTagLinks(userId, List.of(id))) {
+                if (!tagIds.remove(link.getTagId())) {
+                    removed.add(link.getTagId());
+                }
+            }
+            if (!removed.isEmpty()) {
+                bookmarkRepository.deleteTagLinks(userId, id, removed);
+            }
+            bookmarkRepository.insertTagLinks(userId, toLinks(id, tagIds));
         }
 
-        Bookmark updatedBookmark = bookmarkRepository.save(existingBookmark);
-        return convertToResponseDto(updatedBookmark);
+        userVersionService.bump(userId);
+        return convertToResponseDto(updatedBookmark, userId);
     }
 
     @Override
@@ -153,10 +330,10 @@ public class BookmarkServiceImpl implements BookmarkService {
             throw new IllegalArgumentException("id and userId should not be null");
         }
 
-        Bookmark bookmark = bookmarkRepository.findByIdAndUserId(id, userId)
-                .orElseThrow(() -> new IllegalArgumentException("Bookmark not found with id: " + id));
-
-        bookmarkRepository.delete(bookmark);
+        if (bookmarkRepository.deleteAllByIdInAndUserId(List.of(id), userId) == 0) {
+            throw new IllegalArgumentException("Bookmark not found with id: " + id);
+        }
+        userVersionService.bump(userId);
     }
 
     @Override
@@ -166,117 +343,290 @@ public class BookmarkServiceImpl implements BookmarkService {
             throw new IllegalArgumentException("url and userId should not be null");
         }
 
-        bookmarkRepository.deleteByUrlAndUserId(url, userId);
+        afterDelete(bookmarkRepository.deleteAllByUrlHashAndUserId(UrlNormalizer.hash(url), userId), userId);
     }
 
-    private BookmarkResponseDto convertToResponseDto(Bookmark bookmark) {
-//        Set<TagResponseDto> tagDtos = bookmark.getTags().stream()
-//                .map(tag -> TagResponseDto.builder()
-//                        .name(tag.getName())
-//                        .build())
-//                .collect(Collectors.toSet());
+    @Override
+    @Transactional
+    public int deleteByIds(Collection<Integer> ids, Integer userId) {
+        if (ids == null || ids.isEmpty() || userId == null) {
+            throw new IllegalArgumentException("ids and userId should not be null or empty");
+        }
+        if (ids.size() > MAX_BULK_IDS) {
+            throw new IllegalArgumentException("at most " + MAX_BULK_IDS + " ids can be deleted at once");
+        }
 
-        Set<TagResponseDto> tagDtos = getHierarchicalTags(bookmark.getTags());
+        return afterDelete(bookmarkRepository.deleteAllByIdInAndUserId(ids, userId), userId);
+    }
 
-        return BookmarkResponseDto.builder()
-                .url(bookmark.getUrl())
-                .title(bookmark.getTitle())
-                .description(bookmark.getDescription())
-                .createdAt(bookmark.getCreatedAt())
-                .updatedAt(bookmark.getUpdatedAt())
-                .tags(tagDtos)
-                .build();
+    @Override
+    @Transactional
+    public int deleteByTag(Integer tagId, boolean includeDescendants, Integer userId) {
+        if (tagId == null || userId == null) {
+            throw new IllegalArgumentException("tagId and userId should not be null");
+        }
+
+        return afterDelete(bookmarkRepository.deleteAllByTag(tagId, includeDescendants, userId), userId);
+    }
+
+    @Override
+    @Transactional
+    public int deleteByCreatedAt(LocalDateTime from, LocalDateTime to, Integer userId) {
+        if (from == null || to == null || userId == null) {
+            throw new IllegalArgumentException("from, to and userId should not be null");
+        }
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("from should be before to");
+        }
+
+        return afterDelete(bookmarkRepository.deleteAllByCreatedAtBetween(from, to, userId), userId);
     }
 
-    private Set<TagResponseDto> getHierarchicalTags(Set<Tag> tags) {
+    /**
+     * Only a delete that removed something invalidates the user's cached responses
+     */
+    private int afterDelete(int deleted, Integer userId) {
+        if (deleted > 0) {
+            userVersionService.bump(userId);
+        }
+        return deleted;
+    }
+
+    private BookmarkResponseDto convertToResponseDto(Bookmark bookmark, Integer userId) {
+        return convertToResponseDtos(List.of(bookmark), userId).get(0);
+    }
+
+    private List<BookmarkResponseDto> convertToResponseDtos(List<Bookmark> bookmarks, Integer userId) {
+        if (bookmarks.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return convertToResponseDtos(bookmarks, userId, tagForestCache.get(userId));
+    }
+
+    /**
+     * Assembles the DTOs in memory from one bookmark_tags query for the whole batch,
+     * lazy associations of the entities are never touched
+     */
+    private List<BookmarkResponseDto> convertToResponseDtos(List<Bookmark> bookmarks, Integer userId, TagForest forest) {
+        List<Integer> bookmarkIds = bookmarks.stream().map(Bookmark::getId).toList();
+        Map<Integer, SortedSet<Integer>> tagIdsByBookmark = new HashMap<>();
+        for (BookmarkTagLinkDto link : bookmarkRepository.findTagLinks(userId, bookmarkIds)) {
+            tagIdsByBookmark.computeIfAbsent(link.getBookmarkId(), id -> new TreeSet<>()).add(link.getTagId());
+        }
+
+        int[] visited = new int[1];
+        List<BookmarkResponseDto> result = new ArrayList<>(bookmarks.size());
+        for (Bookmark bookmark : bookmarks) {
+            Set<Integer> tagIds = tagIdsByBookmark.getOrDefault(bookmark.getId(), Collections.emptySortedSet());
+            result.add(BookmarkResponseDto.builder()
+                    .id(bookmark.getId())
+                    .url(bookmark.getUrl())
+                    .title(bookmark.getTitle())
+                    .description(bookmark.getDescription())
+                    .faviconUrl(bookmark.getFaviconUrl())
+                    .createdAt(bookmark.getCreatedAt())
+                    .updatedAt(bookmark.getUpdatedAt())
+                    .tags(getHierarchicalTags(tagIds, forest, visited))
+                    .build());
+        }
+        // one increment per batch keeps the counter off the per-node path
+        meterRegistry.counter("tagstack.tag.tree.nodes.visited").increment(visited[0]);
+        return result;
+    }
+
+    /**
+     * visited accumulates the number of tree nodes walked, the root lookup and the path each walk depth + 1 nodes
+     */
+    private Set<TagResponseDto> getHierarchicalTags(Set<Integer> tagIds, TagForest forest, int[] visited) {
         Set<TagResponseDto> result = new HashSet<>();
-        Map<Integer, Tag> processedRoots = new HashMap<>();
+        Set<Integer> processedRoots = new HashSet<>();
 
         // For each tag directly associated with the bookmark
-        for (Tag tag : tags) {
-            // Find the root tag
-            Tag rootTag = findRootTag(tag);
+        for (Integer tagId : tagIds) {
+            int tag = forest.indexOf(tagId);
+            if (tag == TagForest.NONE) {
+                continue;
+            }
 
             // Skip if we've already processed this root
-            if (processedRoots.containsKey(rootTag.getId())) {
+            visited[0] += forest.depth(tag) + 1;
+            if (!processedRoots.add(forest.root(tag))) {
                 continue;
             }
 
-            // Mark this root as processed
-            processedRoots.put(rootTag.getId(), rootTag);
-
-            // Build path from root to the bookmark's tag
-            TagResponseDto rootDto = buildPathToTag(rootTag, tag.getId());
-            result.add(rootDto);
+            // Path from root to the bookmark's tag
+            visited[0] += forest.depth(tag) + 1;
+            result.add(forest.pathTo(tag));
         }
 
         return result;
     }
 
     /**
-     * Finds the root tag by traversing up the parent chain
+     * Fills the tag ids of the bookmarks from one bookmark_tags query and returns the dictionary of those tags
+     * and their ancestors ordered by id, each tag appears once however many bookmarks carry it
      */
-    private Tag findRootTag(Tag tag) {
-        Tag current = tag;
-        while (current.getParent() != null) {
-            current = current.getParent();
+    private List<TagCompactDto> attachTagIds(List<BookmarkCompactDto> bookmarks, Integer userId) {
+        if (bookmarks.isEmpty()) {
+            return new ArrayList<>();
         }
-        return current;
+
+        List<Integer> bookmarkIds = bookmarks.stream().map(BookmarkCompactDto::getId).toList();
+        Map<Integer, SortedSet<Integer>> tagIdsByBookmark = new HashMap<>();
+        for (BookmarkTagLinkDto link : bookmarkRepository.findTagLinks(userId, bookmarkIds)) {
+            tagIdsByBookmark.computeIfAbsent(link.getBookmarkId(), id -> new TreeSet<>()).add(link.getTagId());
+        }
+
+        TagForest forest = tagForestCache.get(userId);
+        Map<Integer, TagCompactDto> dictionary = new TreeMap<>();
+        for (BookmarkCompactDto bookmark : bookmarks) {
+            List<Integer> tagIds = new ArrayList<>();
+            for (Integer tagId : tagIdsByBookmark.getOrDefault(bookmark.getId(), Collections.emptySortedSet())) {
+                int tag = forest.indexOf(tagId);
+                if (tag == TagForest.NONE) {
+                    continue;
+                }
+                tagIds.add(tagId);
+
+                // ancestors of a tag already in the dictionary are there as well
+                for (int node = tag; node != TagForest.NONE && !dictionary.containsKey(forest.id(node));
+                     node = forest.parent(node)) {
+                    int parent = forest.parent(node);
+                    dictionary.put(forest.id(node), new TagCompactDto(
+                            forest.id(node), parent != TagForest.NONE ? forest.id(parent) : null, forest.name(node)));
+                }
+            }
+            bookmark.setTagIds(tagIds);
+        }
+        return new ArrayList<>(dictionary.values());
     }
 
     /**
-     * Builds a path from the root tag down to the target tag
-     * Only includes children that are on the path to the target tag
+     * Null fields are not serialized in the compact shape, id is always kept
      */
-    private TagResponseDto buildPathToTag(Tag currentTag, Integer targetTagId) {
-        // Create DTO for current tag
-        TagResponseDto dto = TagResponseDto.builder()
-                .name(currentTag.getName())
-                .children(new ArrayList<>())
-                .build();
+    private void project(BookmarkCompactDto bookmark, Set<String> fields) {
+        if (!fields.contains("url")) {
+            bookmark.setUrl(null);
+        }
+        if (!fields.contains("title")) {
+            bookmark.setTitle(null);
+        }
+        if (!fields.contains("description")) {
+            bookmark.setDescription(null);
+        }
+        if (!fields.contains("createdAt")) {
+            bookmark.setCreatedAt(null);
+        }
+        if (!fields.contains("updatedAt")) {
+            bookmark.setUpdatedAt(null);
+        }
+    }
 
-        // If this is the target tag, return without children
-        if (currentTag.getId().equals(targetTagId)) {
-            return dto;
+    /**
+     * Comma separated list of COMPACT_FIELDS, all of them when not given
+     */
+    private Set<String> resolveFields(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return COMPACT_FIELDS;
         }
 
-        // Find the child that leads to the target tag
-        for (Tag child : currentTag.getChildren()) {
-            // Check if the target is this child or a descendant of this child
-            if (isTagOrDescendant(child, targetTagId)) {
-                TagResponseDto childDto = buildPathToTag(child, targetTagId);
-                dto.getChildren().add(childDto);
-                break; // We only need the path to the target, not all children
+        Set<String> result = new HashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (!COMPACT_FIELDS.contains(name)) {
+                throw new IllegalArgumentException("unknown field: " + name + ", expected one of " +
+                        new TreeSet<>(COMPACT_FIELDS));
             }
+            result.add(name);
         }
+        return result;
+    }
 
-        return dto;
+    private int resolvePageSize(Integer limit) {
+        int pageSize = limit != null ? limit : DEFAULT_PAGE_SIZE;
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit should be between 1 and " + MAX_PAGE_SIZE);
+        }
+        return pageSize;
     }
 
     /**
-     * Checks if the given tag is the target tag or has the target tag as a descendant
+     * Cuts the extra row fetched beyond the page size, its presence means there is a next page
      */
-    private boolean isTagOrDescendant(Tag tag, Integer targetTagId) {
-        if (tag.getId().equals(targetTagId)) {
-            return true;
+    private BookmarkPageDto toPage(List<Bookmark> bookmarks, int pageSize, Integer userId) {
+        String nextCursor = null;
+        if (bookmarks.size() > pageSize) {
+            bookmarks = bookmarks.subList(0, pageSize);
+            Bookmark last = bookmarks.get(pageSize - 1);
+            nextCursor = encodeCursor(last.getCreatedAt(), last.getId());
         }
 
-        for (Tag child : tag.getChildren()) {
-            if (isTagOrDescendant(child, targetTagId)) {
-                return true;
-            }
-        }
+        return BookmarkPageDto.builder()
+                .items(convertToResponseDtos(bookmarks, userId))
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    /**
+     * Cursor is the keyset position (created_at, id) of the last returned bookmark, base64url encoded
+     */
+    private String encodeCursor(LocalDateTime createdAt, Integer id) {
+        String position = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
 
-        return false;
+    private Bookmark decodeCursor(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = position.lastIndexOf('|');
+            return Bookmark.builder()
+                    .createdAt(LocalDateTime.parse(position.substring(0, separator)))
+                    .id(Integer.parseInt(position.substring(separator + 1)))
+                    .build();
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new IllegalArgumentException("invalid cursor: " + cursor);
+        }
     }
 
     private Bookmark convertToEntity(BookmarkRequestDto dto, Integer userId) {
         return Bookmark.builder()
                 .userId(userId)
                 .url(dto.getUrl())
+                .urlHash(UrlNormalizer.hash(dto.getUrl()))
                 .title(dto.getTitle())
                 .description(dto.getDescription())
-                .tags(new HashSet<>())
                 .build();
     }
+
+    /**
+     * Checks in one query that all tags exist and belong to the user, the error lists every missing id
+     */
+    private Set<Integer> resolveTagIds(Collection<Integer> requested, Integer userId) {
+        Set<Integer> tagIds = new HashSet<>();
+        if (requested == null || requested.isEmpty()) {
+            return tagIds;
+        }
+
+        for (Tag tag : tagRepository.findAllByIdInAndUserId(new HashSet<>(requested), userId)) {
+            tagIds.add(tag.getId());
+        }
+        Set<Integer> missing = new TreeSet<>(requested);
+        missing.removeAll(tagIds);
+        if (!missing.isEmpty()) {
+            throw new IllegalArgumentException("tags not found with ids: " + missing);
+        }
+        return tagIds;
+    }
+
+    private List<BookmarkTagLinkDto> toLinks(Integer bookmarkId, Set<Integer> tagIds) {
+        return tagIds.stream().map(tagId -> new BookmarkTagLinkDto(bookmarkId, tagId)).toList();
+    }
+
+    /**
+     * Bookmarks saved without a title or description are handed to the metadata enrichment
+     */
+    static boolean lacksMetadata(Bookmark bookmark) {
+        return bookmark.getTitle() == null || bookmark.getTitle().isBlank()
+                || bookmark.getDescription() == null || bookmark.getDescription().isBlank();
+    }
 }
@@ -0,0 +1,34 @@
+package org.kovalenko.tagstack.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.kovalenko.tagstack.cache.TagForest;
+import org.kovalenko.tagstack.repository.BookmarkRepository;
+import org.kovalenko.tagstack.repository.TagRepository;
+import org.kovalenko.tagstack.service.ExportService;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+@Service
+@RequiredArgsConstructor
+public class ExportServiceImpl implements ExportService {
+    private static final int FETCH_SIZE = 1000;
+
+    private final BookmarkRepository bookmarkRepository;
+    private final TagRepository tagRepository;
+
+    /**
+     * Tags and bookmarks are read from one snapshot of a read-only repeatable read transaction, so every exported
+     * tag id is in the exported forest. The forest is loaded rather than taken from the cache for the same reason.
+     */
+    @Override
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public void export(Integer userId, ExportSink sink) {
+        if (userId == null) {
+            throw new IllegalArgumentException("userId should not be null");
+        }
+
+        sink.tags(TagForest.of(tagRepository.findTagNodesByUserId(userId)));
+        bookmarkRepository.streamExport(userId, FETCH_SIZE, sink::bookmarks);
+    }
+}
@@ -0,0 +1,109 @@
+package org.kovalenko.tagstack.service.impl;
+
+import org.kovalenko.tagstack.dto.BookmarkImportItemDto;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Streaming reader of the Netscape bookmark file format exported by browsers.
+ * Folders become tag paths, the TAGS attribute adds further tags, DD lines become descriptions.
+ */
+public final class NetscapeBookmarkParser {
+    private static final Pattern TOKEN = Pattern.compile(
+            "<DL>|</DL>|<DT>\\s*<H3[^>]*>(.*?)</H3>|<DT>\\s*<A\\s+([^>]*)>(.*?)</A>|<DD>(.*)",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern ATTRIBUTE = Pattern.compile("([\\w-]+)\\s*=\\s*\"([^\"]*)\"");
+
+    private NetscapeBookmarkParser() {
+    }
+
+    public static void parse(Reader input, Consumer<BookmarkImportItemDto> consumer) throws IOException {
+        BufferedReader reader = new BufferedReader(input);
+        Deque<String> folders = new ArrayDeque<>();
+        String pendingFolder = null;
+        BookmarkImportItemDto pending = null;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            Matcher matcher = TOKEN.matcher(line);
+            while (matcher.find()) {
+                String token = matcher.group();
+                if (matcher.group(4) != null) {
+                    if (pending != null) {
+                        pending.setDescription(unescape(matcher.group(4).trim()));
+                    }
+                    continue;
+                }
+
+                // everything except a description ends the previous bookmark
+                if (pending != null) {
+                    consumer.accept(pending);
+                    pending = null;
+                }
+
+                if (token.equalsIgnoreCase("<DL>")) {
+                    // the root list has no folder header
+                    if (pendingFolder != null) {
+                        folders.addLast(pendingFolder);
+                    }
+                    pendingFolder = null;
+                } else if (token.equalsIgnoreCase("</DL>")) {
+                    folders.pollLast();
+                } else if (matcher.group(1) != null) {
+                    pendingFolder = unescape(matcher.group(1).trim()).replace('/', ' ');
+                } else {
+                    pending = toItem(matcher.group(2), matcher.group(3), folders);
+                }
+            }
+        }
+
+        if (pending != null) {
+            consumer.accept(pending);
+        }
+    }
+
+    private static BookmarkImportItemDto toItem(String attributes, String title, Deque<String> folders) {
+        String url = null;
+        List<String> tags = new ArrayList<>();
+        if (!folders.isEmpty()) {
+            tags.add(String.join("/", folders));
+        }
+
+        Matcher matcher = ATTRIBUTE.matcher(attributes);
+        while (matcher.find()) {
+            String name = matcher.group(1);
+            if (name.equalsIgnoreCase("HREF")) {
+                url = unescape(matcher.group(2));
+            } else if (name.equalsIgnoreCase("TAGS")) {
+                for (String tag : unescape(matcher.group(2)).split(",")) {
+                    if (!tag.isBlank()) {
+                        tags.add(tag.trim());
+                    }
+                }
+            }
+        }
+
+        return BookmarkImportItemDto.builder()
+                .url(url)
+                .title(unescape(title.trim()))
+                .tags(tags)
+                .build();
+    }
+
+    static String unescape(String value) {
+        return value.replace("&lt;", "<")
+                .replace("&gt;", ">")
+                .replace("&quot;", "\"")
+                .replace("&#39;", "'")
+                .replace("&amp;", "&");
+    }
+}
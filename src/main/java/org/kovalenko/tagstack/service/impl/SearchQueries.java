@@ -0,0 +1,21 @@
+package org.kovalenko.tagstack.service.impl;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+final class SearchQueries {
+
+    private SearchQueries() {
+    }
+
+    /**
+     * Turns free text into a to_tsquery expression where every word is a prefix match,
+     * so the search box can query on every keystroke: "spring boo" -> "spring:* & boo:*"
+     */
+    static String toPrefixTsQuery(String query) {
+        return Arrays.stream(query.toLowerCase().split("[\\s&|!():*<>'\\\\]+"))
+                .filter(word -> !word.isEmpty())
+                .map(word -> word + ":*")
+                .collect(Collectors.joining(" & "));
+    }
+}
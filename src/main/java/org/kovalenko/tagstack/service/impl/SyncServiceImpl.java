@@ -0,0 +1,128 @@
+package org.kovalenko.tagstack.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.kovalenko.tagstack.dto.BookmarkResponseDto;
+import org.kovalenko.tagstack.dto.SyncDto;
+import org.kovalenko.tagstack.dto.TagNodeDto;
+import org.kovalenko.tagstack.entity.ChangeLogEntry;
+import org.kovalenko.tagstack.repository.ChangeLogRepository;
+import org.kovalenko.tagstack.repository.TagRepository;
+import org.kovalenko.tagstack.service.BookmarkService;
+import org.kovalenko.tagstack.service.SyncService;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+@Service
+@RequiredArgsConstructor
+public class SyncServiceImpl implements SyncService {
+    private static final int DEFAULT_LIMIT = 500;
+    private static final int MAX_LIMIT = 5000;
+
+    private final ChangeLogRepository changeLogRepository;
+    private final BookmarkService bookmarkService;
+    private final TagRepository tagRepository;
+
+    /**
+     * Reads the log after the token and collapses it to the latest operation per entity,
+     * created and updated entities are returned in their current state
+     */
+    @Override
+    public SyncDto getChanges(Integer userId, String since, Integer limit) {
+        if (userId == null) {
+            throw new IllegalArgumentException("userId should not be null");
+        }
+        int pageSize = limit != null ? limit : DEFAULT_LIMIT;
+        if (pageSize < 1 || pageSize > MAX_LIMIT) {
+            throw new IllegalArgumentException("limit should be between 1 and " + MAX_LIMIT);
+        }
+
+        long[] position = since == null || since.isBlank() ? new long[]{0, 0} : decodeToken(since);
+        List<ChangeLogEntry> entries = changeLogRepository.findChangesAfter(userId, position[0], position[1], pageSize + 1);
+        boolean hasMore = entries.size() > pageSize;
+        if (hasMore) {
+            entries = entries.subList(0, pageSize);
+        }
+
+        // entity id -> deleted, later entries win
+        Map<Integer, Boolean> bookmarks = new LinkedHashMap<>();
+        Map<Integer, Boolean> tags = new LinkedHashMap<>();
+        for (ChangeLogEntry entry : entries) {
+            Map<Integer, Boolean> target = ChangeLogEntry.TAG.equals(entry.getEntityType()) ? tags : bookmarks;
+            target.remove(entry.getEntityId());
+            target.put(entry.getEntityId(), ChangeLogEntry.DELETE.equals(entry.getOperation()));
+        }
+
+        List<Integer> changedBookmarkIds = changedIds(bookmarks);
+        List<BookmarkResponseDto> changedBookmarks = bookmarkService.getAllByIds(changedBookmarkIds, userId);
+        List<Integer> changedTagIds = changedIds(tags);
+        List<TagNodeDto> changedTags = changedTagIds.isEmpty()
+                ? new ArrayList<>()
+                : tagRepository.findTagNodesByUserIdAndIdIn(userId, changedTagIds);
+
+        // a row missing now was deleted by a change further down the log
+        List<Integer> deletedBookmarkIds = deletedIds(bookmarks);
+        Set<Integer> found = new HashSet<>();
+        changedBookmarks.forEach(bookmark -> found.add(bookmark.getId()));
+        changedBookmarkIds.stream().filter(id -> !found.contains(id)).forEach(deletedBookmarkIds::add);
+
+        List<Integer> deletedTagIds = deletedIds(tags);
+        found.clear();
+        changedTags.forEach(tag -> found.add(tag.getId()));
+        changedTagIds.stream().filter(id -> !found.contains(id)).forEach(deletedTagIds::add);
+
+        String nextToken = entries.isEmpty()
+                ? encodeToken(position[0], position[1])
+                : encodeToken(entries.get(entries.size() - 1).getTxId(), entries.get(entries.size() - 1).getId());
+
+        return SyncDto.builder()
+                .bookmarks(changedBookmarks)
+                .tags(changedTags)
+                .deletedBookmarkIds(deletedBookmarkIds)
+                .deletedTagIds(deletedTagIds)
+                .nextToken(nextToken)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    private List<Integer> changedIds(Map<Integer, Boolean> entities) {
+        List<Integer> result = new ArrayList<>();
+        entities.forEach((id, deleted) -> {
+            if (!deleted) {
+                result.add(id);
+            }
+        });
+        return result;
+    }
+
+    private List<Integer> deletedIds(Map<Integer, Boolean> entities) {
+        List<Integer> result = new ArrayList<>();
+        entities.forEach((id, deleted) -> {
+            if (deleted) {
+                result.add(id);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Token is the log position (tx_id, id) of the last returned change, base64url encoded
+     */
+    private String encodeToken(long txId, long id) {
+        String position = txId + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private long[] decodeToken(String token) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = position.indexOf(':');
+            return new long[]{
+                    Long.parseLong(position.substring(0, separator)),
+                    Long.parseLong(position.substring(separator + 1))};
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("invalid sync token: " + token);
+        }
+    }
+}
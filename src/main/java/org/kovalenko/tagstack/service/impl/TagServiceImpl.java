@@ -2,37 +2,146 @@ package org.kovalenko.tagstack.service.impl;
 
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import org.kovalenko.tagstack.cache.TagForest;
+import org.kovalenko.tagstack.cache.TagForestCache;
+import org.kovalenko.tagstack.cache.TagUsageCache;
+import org.kovalenko.tagstack.dto.TagBatchResultDto;
+import org.kovalenko.tagstack.dto.TagFacetDto;
+import org.kovalenko.tagstack.dto.TagNodeDto;
 import org.kovalenko.tagstack.dto.TagRequestDto;
 import org.kovalenko.tagstack.dto.TagResponseDto;
+import org.kovalenko.tagstack.dto.TagSuggestionDto;
 import org.kovalenko.tagstack.entity.Tag;
+import org.kovalenko.tagstack.event.TagsChangedEvent;
+import org.kovalenko.tagstack.repository.TagCountView;
 import org.kovalenko.tagstack.repository.TagRepository;
 import org.kovalenko.tagstack.service.TagService;
+import org.kovalenko.tagstack.service.UserVersionService;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @RequiredArgsConstructor
 @Service
 public class TagServiceImpl implements TagService {
+    private static final int STREAM_CHUNK_SIZE = 500;
+    private static final int DEFAULT_SUGGESTION_LIMIT = 10;
+    private static final int MAX_SUGGESTION_LIMIT = 50;
+    private static final int MAX_BATCH_IDS = 10000;
 
     private final TagRepository repository;
+    private final TagForestCache tagForestCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final UserVersionService userVersionService;
+    private final TagUsageCache tagUsageCache;
 
     @Override
     public List<TagResponseDto> getAll(Integer userId) {
         if (userId != null) {
-            List<Tag> allByUserId = repository.findAllByUserId(userId);
-            return allByUserId.stream().map(this::convertToResponseDto).toList();
+            TagForest forest = tagForestCache.get(userId);
+            List<TagResponseDto> result = new ArrayList<>(forest.size());
+            for (int i = 0; i < forest.size(); i++) {
+                result.add(forest.toResponseDto(i));
+            }
+            return result;
         } else {
             // todo custom exception
             throw new IllegalArgumentException("userId should not be null");
         }
     }
 
+    /**
+     * Same tags as getAll, the trees are built one chunk at a time so only a chunk of them is held at once
+     */
+    @Override
+    public void streamAll(Integer userId, Consumer<List<TagResponseDto>> chunkConsumer) {
+        if (userId == null) {
+            throw new IllegalArgumentException("userId should not be null");
+        }
+
+        TagForest forest = tagForestCache.get(userId);
+        List<TagResponseDto> chunk = new ArrayList<>(STREAM_CHUNK_SIZE);
+        for (int i = 0; i < forest.size(); i++) {
+            chunk.add(forest.toResponseDto(i));
+            if (chunk.size() == STREAM_CHUNK_SIZE) {
+                chunkConsumer.accept(chunk);
+                chunk = new ArrayList<>(STREAM_CHUNK_SIZE);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunkConsumer.accept(chunk);
+        }
+    }
+
+    /**
+     * Served from the cached forest and usage counts, the database is only read when one of them isn't cached
+     */
+    @Override
+    public List<TagSuggestionDto> suggest(String prefix, Integer userId, Integer limit) {
+        if (userId == null) {
+            throw new IllegalArgumentException("userId should not be null");
+        }
+        if (prefix == null || prefix.isBlank()) {
+            throw new IllegalArgumentException("prefix should not be null or blank");
+        }
+        int size = limit != null ? limit : DEFAULT_SUGGESTION_LIMIT;
+        if (size < 1 || size > MAX_SUGGESTION_LIMIT) {
+            throw new IllegalArgumentException("limit should be between 1 and " + MAX_SUGGESTION_LIMIT);
+        }
+
+        TagForest forest = tagForestCache.get(userId);
+        Map<Integer, Long> usages = tagUsageCache.get(userId);
+        // names are stored lowercased, see convertToEntity
+        int[] matches = forest.withNamePrefix(prefix.trim().toLowerCase());
+
+        // the matches come in name order and the sort is stable, so equally ranked tags stay sorted by name
+        List<Integer> ranked = Arrays.stream(matches).boxed()
+                .sorted(Comparator.<Integer>comparingLong(tag -> usages.getOrDefault(forest.id(tag), 0L))
+                        .reversed()
+                        .thenComparingInt(forest::depth))
+                .limit(size)
+                .toList();
+
+        List<TagSuggestionDto> result = new ArrayList<>(ranked.size());
+        for (int tag : ranked) {
+            LinkedList<String> path = new LinkedList<>();
+            for (int node = tag, steps = 0; node != TagForest.NONE && steps <= forest.depth(tag); steps++) {
+                path.addFirst(forest.name(node));
+                node = forest.parent(node);
+            }
+            result.add(TagSuggestionDto.builder()
+                    .id(forest.id(tag))
+                    .name(forest.name(tag))
+                    .path(path)
+                    .usageCount(usages.getOrDefault(forest.id(tag), 0L))
+                    .build());
+        }
+        return result;
+    }
+
     @Override
     public List<TagResponseDto> getByName(String name, Integer userId) {
         if (userId != null && name != null && !name.isBlank()) {
-            return repository.findAllByNameAndUserId(name, userId)
-                    .stream().map(this::convertToResponseDto).toList();
+            TagForest forest = tagForestCache.get(userId);
+            List<TagResponseDto> result = new ArrayList<>();
+            for (int i = 0; i < forest.size(); i++) {
+                if (forest.name(i).equals(name)) {
+                    result.add(forest.toResponseDto(i));
+                }
+            }
+            return result;
         } else {
             throw new IllegalArgumentException("userId or name should not be null");
         }
@@ -41,14 +150,53 @@ public class TagServiceImpl implements TagService {
     @Override
     public TagResponseDto getById(Integer id, Integer userId) {
         if (id != null && userId != null) {
-            return repository.findByIdAndUserId(id, userId)
-                    .map(this::convertToResponseDto)
-                    .orElseThrow(() -> new IllegalArgumentException("tag with id " + id + " not found for user " + userId));
+            TagForest forest = tagForestCache.get(userId);
+            int index = forest.indexOf(id);
+            if (index == TagForest.NONE) {
+                throw new IllegalArgumentException("tag with id " + id + " not found for user " + userId);
+            }
+            return forest.toResponseDto(index);
         } else {
             throw new IllegalArgumentException("id and userId should not be null");
         }
     }
 
+    @Override
+    public List<TagFacetDto> getFacets(Integer userId, String query) {
+        if (userId == null) {
+            throw new IllegalArgumentException("userId should not be null");
+        }
+
+        String tsQuery = query != null ? SearchQueries.toPrefixTsQuery(query) : "";
+        List<TagCountView> counts = tsQuery.isEmpty()
+                ? repository.countBookmarksByTag(userId)
+                : repository.countSearchedBookmarksByTag(userId, tsQuery);
+
+        TagForest forest = tagForestCache.get(userId);
+        long[] directCounts = new long[forest.size()];
+        long[] subtreeCounts = new long[forest.size()];
+        for (TagCountView count : counts) {
+            int index = forest.indexOf(count.getTagId());
+            if (index != TagForest.NONE) {
+                directCounts[index] = count.getDirectCount();
+                subtreeCounts[index] = count.getSubtreeCount();
+            }
+        }
+
+        List<TagFacetDto> result = new ArrayList<>(forest.size());
+        for (int i = 0; i < forest.size(); i++) {
+            int parent = forest.parent(i);
+            result.add(TagFacetDto.builder()
+                    .id(forest.id(i))
+                    .parentId(parent != TagForest.NONE ? forest.id(parent) : null)
+                    .name(forest.name(i))
+                    .directCount(directCounts[i])
+                    .subtreeCount(subtreeCounts[i])
+                    .build());
+        }
+        return result;
+    }
+
     @Override
     @Transactional
     public TagResponseDto create(TagRequestDto dto, Integer userId) {
@@ -62,8 +210,12 @@ public class TagServiceImpl implements TagService {
                             "parent tag with id " + dto.getParentId() + " not found for user " + userId));
         }
 
-        Tag tag = convertToEntity(dto, userId);
-        return convertToResponseDto(repository.save(tag));
+        Tag savedTag = repository.save(convertToEntity(dto, userId));
+        // the sequence assigns the id on persist, so the path goes out with the insert
+        savedTag.setPath(buildPath(savedTag.getParent(), savedTag.getId()));
+        userVersionService.bump(userId);
+        eventPublisher.publishEvent(new TagsChangedEvent(userId, List.of(toNode(savedTag)), List.of()));
+        return convertToResponseDto(savedTag);
     }
 
 
@@ -78,6 +230,7 @@ public class TagServiceImpl implements TagService {
                 .orElseThrow(() -> new IllegalArgumentException("tag with id " + id + " not found for user " + userId));
 
         existingTag.setName(dto.getName().toLowerCase());
+        String oldPath = existingTag.getPath();
 
         if (dto.getParentId() != null) {
             if (dto.getParentId().equals(id)) {
@@ -88,13 +241,28 @@ public class TagServiceImpl implements TagService {
                     .orElseThrow(() -> new IllegalArgumentException(
                             "parent tag with id " + dto.getParentId() + " not found for user " + userId));
 
+            if (oldPath != null && parent.getPath() != null && parent.getPath().startsWith(oldPath)) {
+                throw new IllegalArgumentException("tag cannot be moved under its own descendant");
+            }
+
             existingTag.setParent(parent);
         } else {
             existingTag.setParent(null);
         }
 
+        String newPath = buildPath(existingTag.getParent(), id);
+        existingTag.setPath(newPath);
         Tag updatedTag = repository.save(existingTag);
-        return convertToResponseDto(updatedTag);
+
+        if (oldPath != null && !oldPath.equals(newPath)) {
+            repository.rewriteSubtreePaths(userId, oldPath, newPath);
+        }
+        userVersionService.bump(userId);
+        eventPublisher.publishEvent(new TagsChangedEvent(userId, List.of(toNode(updatedTag)), List.of()));
+
+        // the moved subtree in one query instead of walking the lazy children level by level
+        TagForest subtree = TagForest.of(repository.findSubtreeNodes(userId, newPath));
+        return subtree.toResponseDto(subtree.indexOf(updatedTag.getId()));
     }
 
 
@@ -105,19 +273,183 @@ public class TagServiceImpl implements TagService {
             throw new IllegalArgumentException("id and userId should not be null");
         }
 
-        Tag tag = repository.findByIdAndUserId(id, userId)
-                .orElseThrow(() -> new IllegalArgumentException("tag with id " + id + " not found for user " + userId));
+        if (repository.deleteSubtree(userId, id) == 0) {
+            throw new IllegalArgumentException("tag with id " + id + " not found for user " + userId);
+        }
+        userVersionService.bump(userId);
+        eventPublisher.publishEvent(new TagsChangedEvent(userId, List.of(), List.of(id)));
+    }
 
-        repository.delete(tag);
+    /**
+     * Bookmarks of the tag get the target instead, the children of the tag move under the target with their
+     * subtrees and the tag is deleted; five writes, however many bookmarks and descendants there are
+     */
+    @Override
+    @Transactional
+    public TagBatchResultDto merge(Integer id, Integer targetId, Integer userId) {
+        if (id == null || targetId == null || userId == null) {
+            throw new IllegalArgumentException("id, targetId and userId should not be null");
+        }
+        if (id.equals(targetId)) {
+            throw new IllegalArgumentException("tag cannot be merged into itself");
+        }
+
+        Map<Integer, TagNodeDto> nodes = findNodes(List.of(id, targetId), userId);
+        TagNodeDto source = nodes.get(id);
+        TagNodeDto target = nodes.get(targetId);
+        if (target.getPath().startsWith(source.getPath())) {
+            throw new IllegalArgumentException("tag cannot be merged into its own descendant");
+        }
+        // read before the paths change, the event carries the descendants under their new parent
+        List<TagNodeDto> moved = new ArrayList<>();
+        for (TagNodeDto node : repository.findSubtreeNodes(userId, source.getPath())) {
+            if (!node.getId().equals(id)) {
+                Integer parentId = id.equals(node.getParentId()) ? targetId : node.getParentId();
+                String path = target.getPath() + node.getPath().substring(source.getPath().length());
+                moved.add(new TagNodeDto(node.getId(), parentId, node.getName(), path));
+            }
+        }
+
+        repository.copyTagLinks(userId, id, targetId);
+        int bookmarks = repository.deleteAllTagLinks(userId, id);
+        repository.reparentChildren(userId, id, targetId);
+        repository.deleteTag(userId, id);
+        // only the former descendants are left under the old path
+        int tags = 1 + repository.rewriteSubtreePaths(userId, source.getPath(), target.getPath());
+
+        userVersionService.bump(userId);
+        eventPublisher.publishEvent(new TagsChangedEvent(userId, moved, List.of(id)));
+        return new TagBatchResultDto(tags, bookmarks);
+    }
+
+    /**
+     * All tags go under the parent in one statement, whatever their number and the size of their subtrees.
+     * A tag below another moved tag is detached from it, tags already under the parent stay as they are.
+     */
+    @Override
+    @Transactional
+    public TagBatchResultDto move(Collection<Integer> ids, Integer parentId, Integer userId) {
+        Set<Integer> tagIds = validateBatch(ids, userId);
+        if (parentId != null && tagIds.contains(parentId)) {
+            throw new IllegalArgumentException("tag cannot be its own parent");
+        }
+
+        Set<Integer> lookup = new LinkedHashSet<>(tagIds);
+        if (parentId != null) {
+            lookup.add(parentId);
+        }
+        Map<Integer, TagNodeDto> nodes = findNodes(lookup, userId);
+        String parentPath = parentId != null ? nodes.get(parentId).getPath() : "/";
+
+        List<String> oldPaths = new ArrayList<>();
+        List<String> newPaths = new ArrayList<>();
+        List<TagNodeDto> moved = new ArrayList<>();
+        for (Integer tagId : tagIds) {
+            TagNodeDto node = nodes.get(tagId);
+            if (parentPath.startsWith(node.getPath())) {
+                throw new IllegalArgumentException("tag cannot be moved under its own descendant");
+            }
+            if (Objects.equals(node.getParentId(), parentId)) {
+                continue;
+            }
+            String path = parentPath + tagId + "/";
+            oldPaths.add(node.getPath());
+            newPaths.add(path);
+            moved.add(new TagNodeDto(tagId, parentId, node.getName(), path));
+        }
+        if (moved.isEmpty()) {
+            return new TagBatchResultDto(0, 0);
+        }
+
+        int tags = repository.moveSubtrees(userId, parentId, oldPaths, newPaths);
+        userVersionService.bump(userId);
+        eventPublisher.publishEvent(new TagsChangedEvent(userId, moved, List.of()));
+        return new TagBatchResultDto(tags, 0);
+    }
+
+    /**
+     * One insert for all bookmarks, ids of bookmarks the user doesn't have and bookmarks that already carry
+     * the tag are not counted
+     */
+    @Override
+    @Transactional
+    public TagBatchResultDto addToBookmarks(Integer id, Collection<Integer> bookmarkIds, Integer userId) {
+        if (id == null) {
+            throw new IllegalArgumentException("id should not be null");
+        }
+        Set<Integer> ids = validateBatch(bookmarkIds, userId);
+        findNodes(List.of(id), userId);
+
+        return afterRetag(repository.insertTagLinks(userId, id, ids), userId);
+    }
+
+    @Override
+    @Transactional
+    public TagBatchResultDto removeFromBookmarks(Integer id, Collection<Integer> bookmarkIds, Integer userId) {
+        if (id == null) {
+            throw new IllegalArgumentException("id should not be null");
+        }
+        Set<Integer> ids = validateBatch(bookmarkIds, userId);
+        findNodes(List.of(id), userId);
+
+        return afterRetag(repository.deleteTagLinks(userId, id, ids), userId);
+    }
+
+    private TagBatchResultDto afterRetag(int bookmarks, Integer userId) {
+        // the tags are unchanged, only the bookmarks and so the user's collection
+        if (bookmarks > 0) {
+            userVersionService.bump(userId);
+        }
+        return new TagBatchResultDto(0, bookmarks);
+    }
+
+    private Set<Integer> validateBatch(Collection<Integer> ids, Integer userId) {
+        if (ids == null || ids.isEmpty() || userId == null) {
+            throw new IllegalArgumentException("ids and userId should not be null or empty");
+        }
+        if (ids.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("ids should not contain null");
+        }
+        if (ids.size() > MAX_BATCH_IDS) {
+            throw new IllegalArgumentException("at most " + MAX_BATCH_IDS + " ids can be changed at once");
+        }
+        return new LinkedHashSet<>(ids);
+    }
+
+    /**
+     * The user's tags by id in one query, every missing id is reported
+     */
+    private Map<Integer, TagNodeDto> findNodes(Collection<Integer> ids, Integer userId) {
+        Map<Integer, TagNodeDto> nodes = new HashMap<>();
+        for (TagNodeDto node : repository.findTagNodesByUserIdAndIdIn(userId, ids)) {
+            nodes.put(node.getId(), node);
+        }
+        List<Integer> missing = ids.stream().filter(tagId -> !nodes.containsKey(tagId)).sorted().toList();
+        if (!missing.isEmpty()) {
+            throw new IllegalArgumentException("tags with ids " + missing + " not found for user " + userId);
+        }
+        return nodes;
     }
 
     private TagResponseDto convertToResponseDto(Tag tag) {
+        // only used for a tag that was just created, so it has no children yet
         return TagResponseDto.builder()
+                .id(tag.getId())
                 .name(tag.getName())
-                .children(tag.getChildren().stream().map(this::convertToResponseDto).toList())
+                .children(new ArrayList<>())
                 .build();
     }
 
+    private TagNodeDto toNode(Tag tag) {
+        return new TagNodeDto(tag.getId(), tag.getParent() != null ? tag.getParent().getId() : null,
+                tag.getName(), tag.getPath());
+    }
+
+    private String buildPath(Tag parent, Integer id) {
+        String parentPath = parent != null && parent.getPath() != null ? parent.getPath() : "/";
+        return parentPath + id + "/";
+    }
+
     private Tag convertToEntity(TagRequestDto dto, Integer userId) {
         return Tag.builder()
                 .userId(userId)
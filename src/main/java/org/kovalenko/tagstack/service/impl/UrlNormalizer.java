@@ -0,0 +1,100 @@
+package org.kovalenko.tagstack.service.impl;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Canonical form of bookmark urls, two urls of the same page map to the same string and url_hash.
+ * http and https are the same page, the host is lowercased without www., the default port of the scheme, dot segments,
+ * trailing slashes, tracking parameters and fragments are dropped and the query is sorted.
+ * Fragments starting with ! or / are client side routes and are kept.
+ * Anything that is not an absolute http(s) url is only trimmed.
+ */
+public final class UrlNormalizer {
+    private static final Set<String> TRACKING_PARAMETERS = Set.of(
+            "fbclid", "gclid", "dclid", "msclkid", "yclid", "igshid", "mc_cid", "mc_eid", "_ga", "ref_src");
+
+    private UrlNormalizer() {
+    }
+
+    public static String normalize(String url) {
+        String trimmed = url.trim();
+        URI uri;
+        try {
+            uri = new URI(trimmed).normalize();
+        } catch (URISyntaxException e) {
+            return trimmed;
+        }
+
+        String scheme = uri.getScheme() != null ? uri.getScheme().toLowerCase(Locale.ROOT) : null;
+        if (uri.isOpaque() || uri.getHost() == null || !("http".equals(scheme) || "https".equals(scheme))) {
+            return trimmed;
+        }
+
+        StringBuilder result = new StringBuilder("https://");
+        if (uri.getRawUserInfo() != null) {
+            result.append(uri.getRawUserInfo()).append('@');
+        }
+        String host = uri.getHost().toLowerCase(Locale.ROOT);
+        if (host.endsWith(".")) {
+            host = host.substring(0, host.length() - 1);
+        }
+        result.append(host.startsWith("www.") ? host.substring(4) : host);
+        // only the default port of the scheme given, http://host:443 is another server than https://host
+        int defaultPort = "http".equals(scheme) ? 80 : 443;
+        if (uri.getPort() != -1 && uri.getPort() != defaultPort) {
+            result.append(':').append(uri.getPort());
+        }
+
+        String path = uri.getRawPath() != null ? uri.getRawPath() : "";
+        int end = path.length();
+        while (end > 0 && path.charAt(end - 1) == '/') {
+            end--;
+        }
+        result.append(path, 0, end);
+
+        if (uri.getRawQuery() != null) {
+            List<String> parameters = new ArrayList<>();
+            for (String parameter : uri.getRawQuery().split("&")) {
+                if (!parameter.isEmpty() && !isTracking(parameter)) {
+                    parameters.add(parameter);
+                }
+            }
+            if (!parameters.isEmpty()) {
+                parameters.sort(null);
+                result.append('?').append(String.join("&", parameters));
+            }
+        }
+
+        String fragment = uri.getRawFragment();
+        if (fragment != null && (fragment.startsWith("!") || fragment.startsWith("/"))) {
+            result.append('#').append(fragment);
+        }
+        return result.toString();
+    }
+
+    /**
+     * SHA-256 of the canonical form, the url_hash column
+     */
+    public static byte[] hash(String url) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(normalize(url).getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            // every java platform has to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean isTracking(String parameter) {
+        int separator = parameter.indexOf('=');
+        String name = (separator >= 0 ? parameter.substring(0, separator) : parameter).toLowerCase(Locale.ROOT);
+        return name.startsWith("utm_") || TRACKING_PARAMETERS.contains(name);
+    }
+}
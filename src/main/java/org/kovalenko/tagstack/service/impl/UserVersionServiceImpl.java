@@ -0,0 +1,34 @@
+package org.kovalenko.tagstack.service.impl;
+
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import org.kovalenko.tagstack.dto.UserVersionDto;
+import org.kovalenko.tagstack.repository.UserVersionRepository;
+import org.kovalenko.tagstack.service.UserVersionService;
+import org.springframework.stereotype.Service;
+
+@Service
+@RequiredArgsConstructor
+public class UserVersionServiceImpl implements UserVersionService {
+    private final UserVersionRepository repository;
+
+    @Override
+    public UserVersionDto get(Integer userId) {
+        if (userId == null) {
+            throw new IllegalArgumentException("userId should not be null");
+        }
+
+        return repository.findById(userId)
+                .map(version -> new UserVersionDto(version.getVersion(), version.getUpdatedAt()))
+                .orElseGet(() -> new UserVersionDto(0, null));
+    }
+
+    /**
+     * Joins the caller's write transaction, so the new version becomes visible together with the write
+     */
+    @Override
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void bump(Integer userId) {
+        repository.bump(userId);
+    }
+}
@@ -0,0 +1,35 @@
+package org.kovalenko.tagstack.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+import java.time.Duration;
+
+@Configuration
+public class WebConfig {
+
+    /**
+     * By default as many API requests run at once as the pool has connections
+     */
+    @Bean
+    public AdmissionControlFilter admissionControlFilter(
+            @Value("${tagstack.admission.max-concurrent:${spring.datasource.hikari.maximum-pool-size:10}}") int maxConcurrent,
+            @Value("${tagstack.admission.timeout:2s}") Duration timeout,
+            MeterRegistry meterRegistry) {
+        return new AdmissionControlFilter(maxConcurrent, timeout, meterRegistry);
+    }
+
+    /**
+     * Smile for internal callers that send Accept: application/x-jackson-smile. Replaces the default converter,
+     * whose mapper is built from scratch, with a copy of the application's mapper, so both encodings agree
+     */
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(ObjectMapper objectMapper) {
+        return new MappingJackson2SmileHttpMessageConverter(objectMapper.copyWith(new SmileFactory()));
+    }
+}
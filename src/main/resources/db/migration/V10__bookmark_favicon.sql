@@ -0,0 +1,3 @@
+-- favicon of the bookmarked page, filled in by the metadata enrichment together with a blank title or description
+
+alter table bookmarks add column favicon_url text;
@@ -0,0 +1,19 @@
+-- materialized ancestor path of every tag, e.g. '/1/5/9/' for tag 9 under 5 under root 1
+
+alter table tags add column path varchar;
+
+with recursive tree as (
+    select id, '/' || id || '/' as path
+    from tags
+    where parent_id is null
+    union all
+    select t.id, tree.path || t.id || '/'
+    from tags t
+    join tree on t.parent_id = tree.id
+)
+update tags set path = tree.path
+from tree
+where tags.id = tree.id;
+
+-- prefix lookups of a subtree: path like '/1/5/%'
+create index idx_tags_user_id_path on tags (user_id, path varchar_pattern_ops);
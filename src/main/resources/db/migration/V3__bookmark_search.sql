@@ -0,0 +1,16 @@
+-- full-text search over title, description and url
+
+create extension if not exists pg_trgm;
+
+-- generated column, so every insert and update of a bookmark keeps it current
+alter table bookmarks add column search_vector tsvector generated always as (
+    setweight(to_tsvector('simple', coalesce(title, '')), 'A') ||
+    setweight(to_tsvector('simple', coalesce(description, '')), 'B') ||
+    setweight(to_tsvector('simple', coalesce(url, '')), 'C')
+) stored;
+
+create index idx_bookmarks_search_vector on bookmarks using gin (search_vector);
+
+-- substring search of the derived ...ContainingIgnoreCase queries, which compare upper(x) like upper(?)
+create index idx_bookmarks_url_trgm on bookmarks using gin (upper(url) gin_trgm_ops);
+create index idx_bookmarks_title_trgm on bookmarks using gin (upper(title) gin_trgm_ops);
@@ -0,0 +1,17 @@
+-- sequence based ids allocated in blocks of 50, identity columns disable jdbc batching in hibernate
+
+create sequence bookmarks_seq increment by 50;
+create sequence tags_seq increment by 50;
+
+-- hibernate's pooled optimizer treats a fetched value as the top of its block,
+-- so the first value has to leave a full block above the current maximum
+select setval('bookmarks_seq', coalesce((select max(id) from bookmarks), 0) + 50, false);
+select setval('tags_seq', coalesce((select max(id) from tags), 0) + 50, false);
+
+alter table bookmarks alter column id drop identity;
+alter table bookmarks alter column id set default nextval('bookmarks_seq');
+alter sequence bookmarks_seq owned by bookmarks.id;
+
+alter table tags alter column id drop identity;
+alter table tags alter column id set default nextval('tags_seq');
+alter sequence tags_seq owned by tags.id;
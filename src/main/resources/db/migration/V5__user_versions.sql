@@ -0,0 +1,12 @@
+-- per user version of the bookmark and tag collections, bumped by every write, drives ETag / Last-Modified
+
+create table user_versions (
+    user_id    int primary key,
+    version    bigint not null,
+    updated_at timestamptz not null default now()
+);
+
+-- existing users start at version 1 so their first ETag already differs from a missing row (version 0)
+insert into user_versions (user_id, version, updated_at)
+select user_id, 1, now()
+from (select user_id from bookmarks union select user_id from tags) users;
@@ -0,0 +1,95 @@
+-- append-only log of bookmark and tag changes for incremental sync
+
+create table change_log (
+    id          bigserial primary key,
+    user_id     int not null,
+    -- transaction that wrote the change, the feed only reads transactions older than every running one
+    tx_id       bigint not null default pg_current_xact_id()::text::bigint,
+    entity_type varchar(16) not null,
+    entity_id   int not null,
+    operation   char(1) not null,
+    changed_at  timestamptz not null default now()
+);
+
+create index idx_change_log_user_id_tx_id on change_log (user_id, tx_id, id);
+-- lookup for the one-row-per-entity-and-transaction rule below
+create index idx_change_log_tx_id_entity on change_log (tx_id, entity_id);
+
+-- creates and updates are logged once per entity and transaction, deletes always
+create function log_change(p_user_id int, p_entity_type text, p_entity_id int, p_operation text) returns void
+    language plpgsql as
+$$
+begin
+    if p_operation <> 'D' and exists (select 1
+                                      from change_log
+                                      where tx_id = pg_current_xact_id()::text::bigint
+                                        and entity_id = p_entity_id
+                                        and entity_type = p_entity_type
+                                        and operation <> 'D') then
+        return;
+    end if;
+    insert into change_log (user_id, entity_type, entity_id, operation)
+    values (p_user_id, p_entity_type, p_entity_id, p_operation);
+end
+$$;
+
+create function log_bookmark_change() returns trigger
+    language plpgsql as
+$$
+begin
+    if tg_op = 'DELETE' then
+        perform log_change(old.user_id, 'bookmark', old.id, 'D');
+    else
+        perform log_change(new.user_id, 'bookmark', new.id, case tg_op when 'INSERT' then 'C' else 'U' end);
+    end if;
+    return null;
+end
+$$;
+
+create function log_tag_change() returns trigger
+    language plpgsql as
+$$
+begin
+    if tg_op = 'DELETE' then
+        perform log_change(old.user_id, 'tag', old.id, 'D');
+    else
+        perform log_change(new.user_id, 'tag', new.id, case tg_op when 'INSERT' then 'C' else 'U' end);
+    end if;
+    return null;
+end
+$$;
+
+-- a changed tag link is an update of the bookmark, unless the bookmark itself is gone (cascade)
+create function log_bookmark_tag_change() returns trigger
+    language plpgsql as
+$$
+declare
+    v_bookmark_id int;
+    v_user_id     int;
+begin
+    v_bookmark_id := case tg_op when 'DELETE' then old.bookmark_id else new.bookmark_id end;
+    select user_id into v_user_id from bookmarks where id = v_bookmark_id;
+    if found then
+        perform log_change(v_user_id, 'bookmark', v_bookmark_id, 'U');
+    end if;
+    return null;
+end
+$$;
+
+create trigger bookmarks_change_log
+    after insert or update or delete on bookmarks
+    for each row execute function log_bookmark_change();
+
+create trigger tags_change_log
+    after insert or update or delete on tags
+    for each row execute function log_tag_change();
+
+create trigger bookmark_tags_change_log
+    after insert or delete on bookmark_tags
+    for each row execute function log_bookmark_tag_change();
+
+-- existing rows are logged as creates, so a sync from the start returns the complete collection
+insert into change_log (user_id, entity_type, entity_id, operation)
+select user_id, 'tag', id, 'C' from tags order by id;
+insert into change_log (user_id, entity_type, entity_id, operation)
+select user_id, 'bookmark', id, 'C' from bookmarks order by id;
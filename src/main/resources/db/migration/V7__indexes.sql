@@ -0,0 +1,22 @@
+-- indexes for the per-user lookups of tags, and exact duplicate bookmarks merged
+
+-- findAllByNameAndUserId
+create index idx_tags_user_id_name on tags (user_id, name);
+-- children of a tag and the on delete cascade of parent_id
+create index idx_tags_parent_id on tags (parent_id);
+
+-- bookmarks become unique per user in V9, by the hash of the canonical url; exact duplicates are merged here,
+-- before the copy in V8, into the oldest bookmark of each group: its links get the union of the group's tags,
+-- the others are deleted
+create temporary table bookmark_duplicates on commit drop as
+select id, keep_id
+from (select id, min(id) over (partition by user_id, url) as keep_id from bookmarks) grouped
+where id <> keep_id;
+
+insert into bookmark_tags (bookmark_id, tag_id)
+select d.keep_id, bt.tag_id
+from bookmark_tags bt
+join bookmark_duplicates d on d.id = bt.bookmark_id
+on conflict do nothing;
+
+delete from bookmarks where id in (select id from bookmark_duplicates);
@@ -0,0 +1,126 @@
+-- hash partitioning of bookmarks and bookmark_tags by user_id
+--
+-- Every query of the application filters by user_id, so each one touches a single partition,
+-- and both tables use the same modulus, so joins on (user_id, bookmark_id) pair partitions up.
+-- The primary keys lead with user_id because unique constraints have to contain the partition key;
+-- bookmark ids still come from bookmarks_seq and stay globally unique.
+--
+-- This migration rebuilds both tables in one transaction, holding an exclusive lock during the copy.
+-- That is fine for small installations. For a large table (the 100M row case) run the same steps online instead,
+-- before deploying this version, then mark V8 as applied (flyway baseline or a manual schema_history row):
+--   1. create bookmarks_new / bookmark_tags_new and their partitions exactly as below, without the copy
+--   2. add row triggers on the old tables that mirror insert, update and delete into the new ones
+--      (bookmark_tags_new takes user_id from the bookmark)
+--   3. backfill in id ranges of ~50k rows per transaction with insert ... on conflict do nothing,
+--      throttled so replication lag stays bounded
+--   4. compare counts per user_id bucket, then in one short transaction: lock both old tables,
+--      drop the mirror triggers, rename old -> *_old and new -> bookmarks / bookmark_tags, move the sequence
+--      ownership and the change_log triggers
+--   5. drop the *_old tables after a verification period
+-- Indexes of the new tables are built per partition before the backfill, create index concurrently on each
+-- partition followed by alter index ... attach partition avoids long locks if they are added afterwards.
+
+create table bookmarks_new (
+    id          int not null default nextval('bookmarks_seq'),
+    user_id     int not null,
+    url         text not null,
+    title       text,
+    description text,
+    created_at  timestamp default now(),
+    updated_at  timestamp default now(),
+    search_vector tsvector generated always as (
+        setweight(to_tsvector('simple', coalesce(title, '')), 'A') ||
+        setweight(to_tsvector('simple', coalesce(description, '')), 'B') ||
+        setweight(to_tsvector('simple', coalesce(url, '')), 'C')
+    ) stored,
+    -- no unique (user_id, url): a btree entry can't hold urls over ~2.7kB and the copy below would fail on one;
+    -- V9 makes bookmarks unique by (user_id, url_hash) instead
+    constraint bookmarks_new_pkey primary key (user_id, id)
+) partition by hash (user_id);
+
+create table bookmark_tags_new (
+    user_id     int not null,
+    bookmark_id int not null,
+    tag_id      int not null references tags (id) on delete cascade,
+    constraint bookmark_tags_new_pkey primary key (user_id, bookmark_id, tag_id),
+    constraint fk_bookmark_tags_bookmark foreign key (user_id, bookmark_id)
+        references bookmarks_new (user_id, id) on delete cascade
+) partition by hash (user_id);
+
+do
+$$
+begin
+    for remainder in 0..15 loop
+        execute format('create table bookmarks_p%s partition of bookmarks_new for values with (modulus 16, remainder %s)',
+                       remainder, remainder);
+        execute format('create table bookmark_tags_p%s partition of bookmark_tags_new for values with (modulus 16, remainder %s)',
+                       remainder, remainder);
+    end loop;
+end
+$$;
+
+insert into bookmarks_new (id, user_id, url, title, description, created_at, updated_at)
+select id, user_id, url, title, description, created_at, updated_at
+from bookmarks;
+
+insert into bookmark_tags_new (user_id, bookmark_id, tag_id)
+select b.user_id, bt.bookmark_id, bt.tag_id
+from bookmark_tags bt
+join bookmarks b on b.id = bt.bookmark_id;
+
+-- the sequence would be dropped together with the old table
+alter sequence bookmarks_seq owned by none;
+
+drop table bookmark_tags;
+drop table bookmarks;
+
+alter table bookmarks_new rename to bookmarks;
+alter table bookmarks rename constraint bookmarks_new_pkey to bookmarks_pkey;
+alter table bookmark_tags_new rename to bookmark_tags;
+alter table bookmark_tags rename constraint bookmark_tags_new_pkey to bookmark_tags_pkey;
+alter sequence bookmarks_seq owned by bookmarks.id;
+
+-- keyset pagination (created_at, id) of findFirstPage / findPageAfter / streamAllByUserId
+create index idx_bookmarks_user_id_created_at on bookmarks (user_id, created_at, id);
+-- hibernate updates and deletes an entity by id alone, this keeps that an index probe per partition
+create index idx_bookmarks_id on bookmarks (id);
+-- findAllByTagIdAndUserId and the on delete cascade from tags
+create index idx_bookmark_tags_tag_id on bookmark_tags (tag_id, bookmark_id);
+
+-- recreated from V3
+create index idx_bookmarks_search_vector on bookmarks using gin (search_vector);
+create index idx_bookmarks_url_trgm on bookmarks using gin (upper(url) gin_trgm_ops);
+create index idx_bookmarks_title_trgm on bookmarks using gin (upper(title) gin_trgm_ops);
+
+-- recreated from V6, links carry the user now
+create or replace function log_bookmark_tag_change() returns trigger
+    language plpgsql as
+$$
+declare
+    v_user_id     int;
+    v_bookmark_id int;
+begin
+    if tg_op = 'DELETE' then
+        v_user_id := old.user_id;
+        v_bookmark_id := old.bookmark_id;
+    else
+        v_user_id := new.user_id;
+        v_bookmark_id := new.bookmark_id;
+    end if;
+    if exists (select 1 from bookmarks where user_id = v_user_id and id = v_bookmark_id) then
+        perform log_change(v_user_id, 'bookmark', v_bookmark_id, 'U');
+    end if;
+    return null;
+end
+$$;
+
+create trigger bookmarks_change_log
+    after insert or update or delete on bookmarks
+    for each row execute function log_bookmark_change();
+
+create trigger bookmark_tags_change_log
+    after insert or delete on bookmark_tags
+    for each row execute function log_bookmark_tag_change();
+
+analyze bookmarks;
+analyze bookmark_tags;
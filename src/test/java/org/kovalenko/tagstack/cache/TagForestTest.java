@@ -0,0 +1,78 @@
+package org.kovalenko.tagstack.cache;
+
+import org.junit.jupiter.api.Test;
+import org.kovalenko.tagstack.dto.TagNodeDto;
+import org.kovalenko.tagstack.dto.TagResponseDto;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TagForestTest {
+    // dev -> (java -> spring, go), news; unordered on purpose
+    private final TagForest forest = TagForest.of(List.of(
+            new TagNodeDto(3, 2, "spring", "/1/2/3/"),
+            new TagNodeDto(5, null, "news", "/5/"),
+            new TagNodeDto(1, null, "dev", "/1/"),
+            new TagNodeDto(4, 1, "go", "/1/4/"),
+            new TagNodeDto(2, 1, "java", "/1/2/")));
+
+    @Test
+    void linksChildrenInIdOrder() {
+        TagResponseDto dev = forest.toResponseDto(forest.indexOf(1));
+
+        assertThat(dev.getChildren()).extracting(TagResponseDto::getName).containsExactly("java", "go");
+        assertThat(dev.getChildren().get(0).getChildren()).extracting(TagResponseDto::getName).containsExactly("spring");
+        assertThat(forest.indexOf(42)).isEqualTo(TagForest.NONE);
+    }
+
+    @Test
+    void pathToContainsOnlyTheChainFromTheRoot() {
+        int spring = forest.indexOf(3);
+
+        TagResponseDto path = forest.pathTo(spring);
+
+        assertThat(forest.id(forest.root(spring))).isEqualTo(1);
+        assertThat(path.getName()).isEqualTo("dev");
+        assertThat(path.getChildren()).singleElement().satisfies(java -> {
+            assertThat(java.getName()).isEqualTo("java");
+            assertThat(java.getChildren()).singleElement()
+                    .satisfies(leaf -> assertThat(leaf.getName()).isEqualTo("spring"));
+        });
+    }
+
+    @Test
+    void depthCountsAncestors() {
+        assertThat(forest.depth(forest.indexOf(1))).isZero();
+        assertThat(forest.depth(forest.indexOf(2))).isEqualTo(1);
+        assertThat(forest.depth(forest.indexOf(3))).isEqualTo(2);
+        assertThat(forest.depth(forest.indexOf(5))).isZero();
+    }
+
+    @Test
+    void namePrefixFindsMatchesInNameOrder() {
+        TagForest withJavascript = forest.with(List.of(new TagNodeDto(6, null, "javascript", null)), List.of());
+
+        assertThat(Arrays.stream(withJavascript.withNamePrefix("ja")).mapToObj(withJavascript::name))
+                .containsExactly("java", "javascript");
+        assertThat(Arrays.stream(withJavascript.withNamePrefix("s")).map(withJavascript::id)).containsExactly(3);
+        assertThat(withJavascript.withNamePrefix("x")).isEmpty();
+    }
+
+    @Test
+    void withAppliesChangesIdempotently() {
+        // move go under java, rename news, drop the java subtree
+        TagForest moved = forest.with(List.of(new TagNodeDto(4, 2, "go", null), new TagNodeDto(5, null, "press", null)),
+                List.of());
+        TagForest removed = moved.with(List.of(), List.of(2)).with(List.of(), List.of(2));
+
+        assertThat(moved.depth(moved.indexOf(4))).isEqualTo(2);
+        TagForest movedTwice = moved.with(List.of(new TagNodeDto(4, 2, "go", null)), List.of());
+        assertThat(movedTwice.depth(movedTwice.indexOf(4))).isEqualTo(2);
+        assertThat(Arrays.stream(moved.withNamePrefix("p")).map(moved::id)).containsExactly(5);
+        assertThat(removed.size()).isEqualTo(2);
+        assertThat(removed.indexOf(3)).isEqualTo(TagForest.NONE);
+        assertThat(removed.indexOf(4)).isEqualTo(TagForest.NONE);
+    }
+}
@@ -0,0 +1,105 @@
+package org.kovalenko.tagstack.controller.rest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.kovalenko.tagstack.cache.TagForest;
+import org.kovalenko.tagstack.dto.BookmarkExportDto;
+import org.kovalenko.tagstack.dto.BookmarkImportItemDto;
+import org.kovalenko.tagstack.dto.TagNodeDto;
+import org.kovalenko.tagstack.service.impl.NetscapeBookmarkParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExportBodiesTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2024, 1, 2, 3, 4, 5);
+
+    // "dev/ops" -> "a,b", plus a second root
+    private static final TagForest FOREST = TagForest.of(List.of(
+            new TagNodeDto(1, null, "dev/ops", "/1/"),
+            new TagNodeDto(2, 1, "a,b", "/1/2/"),
+            new TagNodeDto(3, null, "news", "/3/")));
+
+    private static final List<BookmarkExportDto> BOOKMARKS = List.of(
+            new BookmarkExportDto(1, "https://example.com/?a=1&b=2", "Quotes \"and\", <commas>",
+                    "line one\nline two", null, CREATED_AT, CREATED_AT, List.of(2, 3)),
+            new BookmarkExportDto(2, "https://example.com/2", "=HYPERLINK(\"https://evil.example\")",
+                    null, "https://example.com/favicon.ico", CREATED_AT, null, List.of()));
+
+    @Test
+    void ndjsonWritesTagsWithParentsThenBookmarksWithTagIds() throws IOException {
+        String[] lines = write(ExportBodies.Format.NDJSON, false).split("\n");
+
+        assertThat(lines).hasSize(5);
+        JsonNode child = MAPPER.readTree(lines[1]);
+        assertThat(child.get("type").asText()).isEqualTo("tag");
+        assertThat(child.get("parentId").asInt()).isEqualTo(1);
+        assertThat(child.get("name").asText()).isEqualTo("a,b");
+        assertThat(MAPPER.readTree(lines[2]).get("parentId").isNull()).isTrue();
+
+        JsonNode bookmark = MAPPER.readTree(lines[3]);
+        assertThat(bookmark.get("type").asText()).isEqualTo("bookmark");
+        assertThat(bookmark.get("title").asText()).isEqualTo("Quotes \"and\", <commas>");
+        assertThat(bookmark.get("description").asText()).isEqualTo("line one\nline two");
+        assertThat(bookmark.get("createdAt").asText()).isEqualTo("2024-01-02T03:04:05");
+        assertThat(bookmark.get("tagIds")).extracting(JsonNode::asInt).containsExactly(2, 3);
+    }
+
+    @Test
+    void csvQuotesWhatNeedsItAndDefusesFormulas() throws IOException {
+        assertThat(write(ExportBodies.Format.CSV, false)).isEqualTo("""
+                id,url,title,description,favicon_url,created_at,updated_at,tags\r
+                1,https://example.com/?a=1&b=2,"Quotes ""and"", <commas>","line one
+                line two",,2024-01-02T03:04:05,2024-01-02T03:04:05,"dev ops/a b,news"\r
+                2,https://example.com/2,"'=HYPERLINK(""https://evil.example"")",,https://example.com/favicon.ico,\
+                2024-01-02T03:04:05,,\r
+                """);
+    }
+
+    @Test
+    void htmlReadsBackThroughTheNetscapeImport() throws IOException {
+        List<BookmarkImportItemDto> items = new ArrayList<>();
+        NetscapeBookmarkParser.parse(new StringReader(write(ExportBodies.Format.HTML, false)), items::add);
+
+        assertThat(items).hasSize(2);
+        assertThat(items.get(0).getUrl()).isEqualTo("https://example.com/?a=1&b=2");
+        assertThat(items.get(0).getTitle()).isEqualTo("Quotes \"and\", <commas>");
+        assertThat(items.get(0).getDescription()).isEqualTo("line one line two");
+        assertThat(items.get(0).getTags()).containsExactlyInAnyOrder("dev ops/a b", "news");
+        assertThat(items.get(1).getTitle()).isEqualTo("=HYPERLINK(\"https://evil.example\")");
+        assertThat(items.get(1).getDescription()).isNull();
+        assertThat(items.get(1).getTags()).isNullOrEmpty();
+    }
+
+    @Test
+    void gzipCompressesTheSameFile() throws IOException {
+        assertThat(write(ExportBodies.Format.HTML, true)).isEqualTo(write(ExportBodies.Format.HTML, false));
+    }
+
+    private static String write(ExportBodies.Format format, boolean gzip) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ExportBodies.body(format, gzip, MAPPER, sink -> {
+            sink.tags(FOREST);
+            // two chunks, as the export hands them over
+            sink.bookmarks(BOOKMARKS.subList(0, 1));
+            sink.bookmarks(BOOKMARKS.subList(1, 2));
+        }).writeTo(out);
+        if (!gzip) {
+            return out.toString(StandardCharsets.UTF_8);
+        }
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.kovalenko.tagstack.controller.rest;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.kovalenko.tagstack.cache.TagForestCache;
+import org.kovalenko.tagstack.cache.TagUsageCache;
+import org.kovalenko.tagstack.dto.TagNodeDto;
+import org.kovalenko.tagstack.dto.TagResponseDto;
+import org.kovalenko.tagstack.repository.TagRepository;
+import org.kovalenko.tagstack.service.UserVersionService;
+import org.kovalenko.tagstack.service.impl.TagServiceImpl;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class StreamingResponsesTest {
+    private static final ObjectMapper JSON = Jackson2ObjectMapperBuilder.json().build();
+    private static final ObjectMapper SMILE = Jackson2ObjectMapperBuilder.smile().build();
+
+    private static final List<List<Item>> CHUNKS = List.of(
+            List.of(new Item(1, "dev"), new Item(2, "a \"quoted\"\nname")),
+            List.of(),
+            List.of(new Item(3, "news")));
+
+    record Item(int id, String name) {
+    }
+
+    @Test
+    void linesWritesOneDocumentPerLine() throws IOException {
+        String body = new String(write(StreamingResponses.<Item>lines(JSON, chunks -> CHUNKS.forEach(chunks))),
+                StandardCharsets.UTF_8);
+
+        assertThat(body).isEqualTo("""
+                {"id":1,"name":"dev"}
+                {"id":2,"name":"a \\"quoted\\"\\nname"}
+                {"id":3,"name":"news"}
+                """);
+        assertThat(write(StreamingResponses.<Item>lines(JSON, chunks -> { }))).isEmpty();
+    }
+
+    @Test
+    void arrayIsTheSerializedListInJsonAndSmile() throws IOException {
+        List<Item> all = CHUNKS.stream().flatMap(List::stream).toList();
+
+        assertThat(new String(write(StreamingResponses.<Item>array(JSON, chunks -> CHUNKS.forEach(chunks))),
+                StandardCharsets.UTF_8)).isEqualTo(JSON.writeValueAsString(all));
+        assertThat(new String(write(StreamingResponses.<Item>array(JSON, chunks -> { })), StandardCharsets.UTF_8))
+                .isEqualTo("[]");
+
+        byte[] smile = write(StreamingResponses.<Item>array(SMILE, chunks -> CHUNKS.forEach(chunks)));
+        assertThat(SMILE.readValue(smile, new TypeReference<List<Item>>() {
+        })).isEqualTo(all);
+    }
+
+    /**
+     * GET /tags streams the trees chunk by chunk, its JSON must stay what the serialized list used to be
+     */
+    @Test
+    void streamedTagsAreTheJsonOfAllTags() throws IOException {
+        // more tags than a chunk, some of them nested three levels deep
+        List<TagNodeDto> nodes = new ArrayList<>();
+        for (int id = 1; id <= 1200; id++) {
+            Integer parentId = id % 3 == 1 ? null : id - 1;
+            String parentPath = parentId == null ? "/" : nodes.get(parentId - 1).getPath();
+            nodes.add(new TagNodeDto(id, parentId, "tag" + id, parentPath + id + "/"));
+        }
+        TagRepository repository = mock(TagRepository.class);
+        when(repository.findTagNodesByUserId(1)).thenReturn(nodes);
+        TagServiceImpl service = new TagServiceImpl(repository, new TagForestCache(repository,
+                new SimpleMeterRegistry(), 100, Duration.ofMinutes(1), Duration.ofMinutes(1)), event -> {
+        }, mock(UserVersionService.class), mock(TagUsageCache.class));
+
+        byte[] streamed = write(StreamingResponses.<TagResponseDto>array(JSON, chunks -> service.streamAll(1, chunks)));
+
+        assertThat(new String(streamed, StandardCharsets.UTF_8)).isEqualTo(JSON.writeValueAsString(service.getAll(1)));
+    }
+
+    private static byte[] write(StreamingResponseBody body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        body.writeTo(out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,233 @@
+package org.kovalenko.tagstack.enrichment;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.kovalenko.tagstack.dto.BookmarkMetadataDto;
+import org.kovalenko.tagstack.event.BookmarksCreatedEvent;
+import org.kovalenko.tagstack.repository.BookmarkRepository;
+import org.kovalenko.tagstack.service.UserVersionService;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class BookmarkEnricherTest {
+    private static final Integer USER_ID = 1;
+
+    private HttpServer server;
+    private final List<Long> requestTimes = Collections.synchronizedList(new ArrayList<>());
+    private BookmarkRepository bookmarkRepository;
+    private UserVersionService userVersionService;
+    private SimpleMeterRegistry meterRegistry;
+    private BookmarkEnricher enricher;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        serve("/article", "text/html; charset=utf-8", """
+                <html><head>
+                <title>
+                  Streams &amp; Cursors
+                </title>
+                <meta name="description" content="How to read &quot;large&quot; tables">
+                <link rel='shortcut icon' href='/static/icon.png'>
+                </head><body><title>not this one</title></body></html>
+                """);
+        serve("/social", "text/html", """
+                <html><head>
+                <meta property="og:title" content="Shared post">
+                <meta property="og:description" content="Only open graph tags">
+                </head></html>
+                """);
+        serve("/data.json", "application/json", "{\"title\": \"not a page\"}");
+        server.start();
+
+        bookmarkRepository = mock(BookmarkRepository.class);
+        when(bookmarkRepository.updateMetadata(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        userVersionService = mock(UserVersionService.class);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (enricher != null) {
+            enricher.stop();
+        }
+        server.stop(0);
+    }
+
+    @Test
+    void fillsMetadataFromTheFetchedPagesInOneBatchWithRequestsToAHostSpacedOut() {
+        enricher = enricher(new HttpPageFetcher(Duration.ofSeconds(2), 64 * 1024, true), 10, Duration.ofMillis(100));
+        enricher.start();
+        long start = System.nanoTime();
+
+        enricher.onBookmarksCreated(new BookmarksCreatedEvent(USER_ID, List.of(
+                new BookmarksCreatedEvent.Created(1, url("/article")),
+                new BookmarksCreatedEvent.Created(2, url("/social")),
+                new BookmarksCreatedEvent.Created(3, url("/data.json")),
+                new BookmarksCreatedEvent.Created(4, "mailto:someone@example.com"))));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<BookmarkMetadataDto>> batch = ArgumentCaptor.forClass(List.class);
+        verify(bookmarkRepository, timeout(5_000)).updateMetadata(batch.capture());
+        Map<Integer, BookmarkMetadataDto> written = batch.getValue().stream()
+                .collect(Collectors.toMap(BookmarkMetadataDto::getBookmarkId, Function.identity()));
+
+        assertThat(written).containsOnlyKeys(1, 2);
+        assertThat(written.get(1).getTitle()).isEqualTo("Streams & Cursors");
+        assertThat(written.get(1).getDescription()).isEqualTo("How to read \"large\" tables");
+        assertThat(written.get(1).getFaviconUrl()).isEqualTo(url("/static/icon.png"));
+        assertThat(written.get(2).getTitle()).isEqualTo("Shared post");
+        assertThat(written.get(2).getDescription()).isEqualTo("Only open graph tags");
+        assertThat(written.get(2).getFaviconUrl()).isEqualTo(url("/favicon.ico"));
+        verify(userVersionService).bump(USER_ID);
+
+        // all three pages live on the same host, the n-th request may not start before n - 1 intervals passed
+        assertThat(requestTimes).hasSize(3);
+        List<Long> times = requestTimes.stream().sorted().toList();
+        for (int i = 0; i < times.size(); i++) {
+            assertThat(times.get(i) - start).isGreaterThanOrEqualTo(Duration.ofMillis(100).multipliedBy(i).toNanos());
+        }
+    }
+
+    @Test
+    void dropsBookmarksBeyondTheQueueCapacity() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        enricher = enricher(uri -> {
+            release.await();
+            return Optional.empty();
+        }, 2, Duration.ZERO);
+        enricher.start();
+
+        for (int i = 1; i <= 5; i++) {
+            enricher.enqueue(USER_ID, i, "https://example.com/" + i);
+        }
+
+        assertThat(meterRegistry.counter("tagstack.enrichment.jobs", "outcome", "dropped").count()).isEqualTo(3);
+        release.countDown();
+        verify(bookmarkRepository, after(300).never()).updateMetadata(anyList());
+    }
+
+    @Test
+    void dropsControlCharactersAndRetriesAFailedBatchOneByOne() throws InterruptedException {
+        when(bookmarkRepository.updateMetadata(anyList())).thenAnswer(invocation -> {
+            List<BookmarkMetadataDto> batch = invocation.getArgument(0);
+            if (batch.stream().anyMatch(metadata -> metadata.getBookmarkId() == 2)) {
+                throw new IllegalStateException("refused by the database");
+            }
+            return batch;
+        });
+        enricher = enricher(uri -> Optional.of(new PageFetcher.FetchedPage(uri,
+                "<title>Page&#0;" + uri.getPath().substring(1) + " &#xD800;</title>")), 10, Duration.ZERO);
+        enricher.start();
+
+        for (int i = 1; i <= 3; i++) {
+            enricher.enqueue(USER_ID, i, "https://example.com/" + i);
+        }
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<BookmarkMetadataDto>> batches = ArgumentCaptor.forClass(List.class);
+        verify(bookmarkRepository, timeout(5_000).times(4)).updateMetadata(batches.capture());
+        assertThat(batches.getAllValues().get(0)).hasSize(3);
+        assertThat(batches.getAllValues().subList(1, 4)).allSatisfy(batch -> assertThat(batch).hasSize(1));
+        assertThat(batches.getAllValues().get(1).get(0).getTitle()).isEqualTo("Page 1");
+        enricher.stop();
+        assertThat(meterRegistry.counter("tagstack.enrichment.updates").count()).isEqualTo(2);
+    }
+
+    @Test
+    void fetcherRefusesPrivateAddressesChecksEveryRedirectAndBoundsTheBody() throws Exception {
+        CountDownLatch finish = new CountDownLatch(1);
+        server.createContext("/moved", exchange -> {
+            exchange.getResponseHeaders().add("Location", exchange.getRequestURI().getQuery());
+            exchange.sendResponseHeaders(302, -1);
+            exchange.close();
+        });
+        server.createContext("/slow", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "text/html");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write("<html><head><title>".getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                finish.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        HttpPageFetcher guarded = new HttpPageFetcher(Duration.ofSeconds(2), 64 * 1024, false);
+        assertThatThrownBy(() -> guarded.fetch(URI.create(url("/article"))))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("refused");
+        assertThat(requestTimes).isEmpty();
+
+        HttpPageFetcher fetcher = new HttpPageFetcher(Duration.ofMillis(500), 64 * 1024, true);
+        assertThat(fetcher.fetch(URI.create(url("/moved?/article")))).hasValueSatisfying(page ->
+                assertThat(page.uri()).isEqualTo(URI.create(url("/article"))));
+        assertThatThrownBy(() -> fetcher.fetch(URI.create(url("/moved?file:///etc/passwd"))))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("not an http url");
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> fetcher.fetch(URI.create(url("/slow")))).isInstanceOf(HttpTimeoutException.class);
+        assertThat(System.nanoTime() - start).isLessThan(Duration.ofSeconds(5).toNanos());
+        finish.countDown();
+
+        for (String address : List.of("127.0.0.1", "10.1.2.3", "172.20.0.1", "192.168.1.1", "169.254.169.254",
+                "100.64.0.1", "0.0.0.0", "::1", "fe80::1", "fd00::1", "::ffff:10.0.0.1", "64:ff9b::a00:1")) {
+            assertThat(HttpPageFetcher.isPublic(InetAddress.getByName(address))).as(address).isFalse();
+        }
+        for (String address : List.of("93.184.215.14", "172.32.0.1", "2606:4700:4700::1111")) {
+            assertThat(HttpPageFetcher.isPublic(InetAddress.getByName(address))).as(address).isTrue();
+        }
+    }
+
+    private BookmarkEnricher enricher(PageFetcher fetcher, int queueCapacity, Duration hostInterval) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+        return new BookmarkEnricher(fetcher, bookmarkRepository, userVersionService, transactionTemplate,
+                meterRegistry, new BookmarkEnricher.Settings(queueCapacity, 2, hostInterval, 10,
+                Duration.ofMillis(500)));
+    }
+
+    private void serve(String path, String contentType, String body) {
+        server.createContext(path, exchange -> {
+            requestTimes.add(System.nanoTime());
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", contentType);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+}
@@ -0,0 +1,143 @@
+package org.kovalenko.tagstack.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.kovalenko.tagstack.PostgresTest;
+import org.kovalenko.tagstack.dto.BookmarkImportItemDto;
+import org.kovalenko.tagstack.entity.Bookmark;
+import org.kovalenko.tagstack.service.BookmarkImportService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The native tag filter of findAllByTags run on PostgreSQL
+ */
+class BookmarkRepositoryCustomImplTest extends PostgresTest {
+    private static final int USER_ID = 900_000_007;
+    private static final int OTHER_USER_ID = 900_000_008;
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @Autowired
+    private BookmarkRepository bookmarkRepository;
+    @Autowired
+    private BookmarkImportService bookmarkImportService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Map<String, Integer> tagIds = new HashMap<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        for (int userId : new int[]{USER_ID, OTHER_USER_ID}) {
+            jdbcTemplate.update("DELETE FROM bookmarks WHERE user_id = ?", userId);
+            jdbcTemplate.update("DELETE FROM tags WHERE user_id = ?", userId);
+        }
+        importBookmarks(USER_ID, List.of(
+                item("https://example.com/0", "dev/java/spring", "news"),
+                item("https://example.com/1", "dev/java", "dev/go"),
+                item("https://example.com/2", "dev/go", "news/tech"),
+                item("https://example.com/3", "news"),
+                item("https://example.com/4", "dev"),
+                item("https://example.com/5")));
+        importBookmarks(OTHER_USER_ID, List.of(item("https://example.com/other", "dev/java")));
+
+        // 1 and 2, 3 and 4 share a creation time, the cursor has to go on by id between them
+        int[] days = {0, 1, 1, 2, 2, 3};
+        for (int i = 0; i < days.length; i++) {
+            jdbcTemplate.update("UPDATE bookmarks SET created_at = ? WHERE user_id = ? AND url = ?",
+                    START.plusDays(days[i]), USER_ID, "https://example.com/" + i);
+        }
+        jdbcTemplate.queryForList("SELECT name, id FROM tags WHERE user_id = ?", USER_ID)
+                .forEach(row -> tagIds.put((String) row.get("name"), (Integer) row.get("id")));
+    }
+
+    @Test
+    void anyTagMatchesTheTagItselfOrAlsoTheTagsBelowIt() {
+        assertThat(urls(find(List.of("java"), false, List.of(), false))).containsExactly("1");
+        assertThat(urls(find(List.of("java"), false, List.of(), true))).containsExactly("0", "1");
+        assertThat(urls(find(List.of("go", "tech"), false, List.of(), false))).containsExactly("1", "2");
+        assertThat(urls(find(List.of("java", "news"), false, List.of(), true))).containsExactly("0", "1", "2", "3");
+    }
+
+    @Test
+    void allTagsHaveToMatchEachOnItsOwn() {
+        assertThat(find(List.of("java", "news"), true, List.of(), false)).isEmpty();
+        assertThat(urls(find(List.of("java", "news"), true, List.of(), true))).containsExactly("0");
+        // two tags of 1 below dev don't make up for news
+        assertThat(urls(find(List.of("dev", "news"), true, List.of(), true))).containsExactly("0", "2");
+        // a tag requested twice is still one tag to match
+        assertThat(urls(find(List.of("java", "java"), true, List.of(), false))).containsExactly("1");
+    }
+
+    @Test
+    void excludedTagsDropTheBookmarksCarryingThem() {
+        assertThat(urls(find(List.of("dev"), false, List.of("news"), false))).containsExactly("4");
+        assertThat(urls(find(List.of("dev"), false, List.of("news"), true))).containsExactly("1", "4");
+        assertThat(urls(find(List.of(), false, List.of("dev"), true))).containsExactly("3", "5");
+        assertThat(urls(find(List.of(), false, List.of("java", "tech"), false))).containsExactly("0", "3", "4", "5");
+    }
+
+    @Test
+    void keysetPagesFollowCreationTimeThenId() {
+        List<Bookmark> first = bookmarkRepository.findAllByTags(USER_ID, ids(List.of("dev")), false, List.of(),
+                true, null, null, 2);
+        assertThat(urls(first)).containsExactly("0", "1");
+
+        Bookmark last = first.get(1);
+        List<Bookmark> second = bookmarkRepository.findAllByTags(USER_ID, ids(List.of("dev")), false, List.of(),
+                true, last.getCreatedAt(), last.getId(), 2);
+        assertThat(urls(second)).containsExactly("2", "4");
+
+        last = second.get(1);
+        assertThat(bookmarkRepository.findAllByTags(USER_ID, ids(List.of("dev")), false, List.of(),
+                true, last.getCreatedAt(), last.getId(), 2)).isEmpty();
+    }
+
+    @Test
+    void tagsOfAnotherUserMatchNothing() {
+        Integer otherJava = jdbcTemplate.queryForObject("SELECT id FROM tags WHERE user_id = ? AND name = 'java'",
+                Integer.class, OTHER_USER_ID);
+
+        assertThat(bookmarkRepository.findAllByTags(USER_ID, List.of(otherJava), false, List.of(),
+                true, null, null, 10)).isEmpty();
+        assertThat(urls(bookmarkRepository.findAllByTags(USER_ID, List.of(), false, List.of(otherJava),
+                true, null, null, 10))).containsExactly("0", "1", "2", "3", "4", "5");
+    }
+
+    private List<Bookmark> find(List<String> tags, boolean matchAll, List<String> excluded,
+                                boolean includeDescendants) {
+        return bookmarkRepository.findAllByTags(USER_ID, ids(tags), matchAll, ids(excluded), includeDescendants,
+                null, null, 10);
+    }
+
+    private List<Integer> ids(Collection<String> names) {
+        return names.stream().map(tagIds::get).toList();
+    }
+
+    private static List<String> urls(List<Bookmark> bookmarks) {
+        return bookmarks.stream().map(bookmark -> bookmark.getUrl().substring("https://example.com/".length()))
+                .toList();
+    }
+
+    private void importBookmarks(int userId, List<BookmarkImportItemDto> items) throws Exception {
+        byte[] json = objectMapper.writeValueAsBytes(items);
+        assertThat(bookmarkImportService.importJson(new ByteArrayInputStream(json), userId).getImported())
+                .isEqualTo(items.size());
+    }
+
+    private static BookmarkImportItemDto item(String url, String... tags) {
+        return BookmarkImportItemDto.builder().url(url).tags(List.of(tags)).build();
+    }
+}
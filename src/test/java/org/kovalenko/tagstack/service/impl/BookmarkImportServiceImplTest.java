@@ -0,0 +1,177 @@
+package org.kovalenko.tagstack.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.kovalenko.tagstack.dto.BookmarkImportErrorDto;
+import org.kovalenko.tagstack.dto.BookmarkImportResultDto;
+import org.kovalenko.tagstack.dto.TagNodeDto;
+import org.kovalenko.tagstack.entity.Bookmark;
+import org.kovalenko.tagstack.entity.Tag;
+import org.kovalenko.tagstack.repository.BookmarkRepository;
+import org.kovalenko.tagstack.repository.TagRepository;
+import org.kovalenko.tagstack.service.UserVersionService;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class BookmarkImportServiceImplTest {
+    private static final Integer USER_ID = 1;
+    private static final ObjectMapper JSON = Jackson2ObjectMapperBuilder.json().build();
+
+    private BookmarkRepository bookmarkRepository;
+    private TagRepository tagRepository;
+    private PlatformTransactionManager transactionManager;
+    private final AtomicInteger ids = new AtomicInteger(100);
+    private final List<List<String>> saved = new ArrayList<>();
+    private BookmarkImportServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        bookmarkRepository = mock(BookmarkRepository.class);
+        when(bookmarkRepository.findUrlHashes(eq(USER_ID), anyCollection())).thenReturn(List.of());
+        when(bookmarkRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Bookmark> bookmarks = invocation.getArgument(0);
+            saved.add(bookmarks.stream().map(Bookmark::getUrl).toList());
+            bookmarks.forEach(bookmark -> bookmark.setId(ids.incrementAndGet()));
+            return bookmarks;
+        });
+
+        tagRepository = mock(TagRepository.class);
+        when(tagRepository.findTagNodesByUserId(USER_ID)).thenReturn(List.of(new TagNodeDto(1, null, "dev", "/1/")));
+        when(tagRepository.save(any(Tag.class))).thenAnswer(invocation -> {
+            Tag tag = invocation.getArgument(0);
+            tag.setId(ids.incrementAndGet());
+            return tag;
+        });
+        when(tagRepository.getReferenceById(anyInt()))
+                .thenAnswer(invocation -> Tag.builder().id(invocation.getArgument(0)).build());
+
+        // every transaction of the import commits or rolls back through this manager
+        transactionManager = mock(PlatformTransactionManager.class);
+        service = new BookmarkImportServiceImpl(bookmarkRepository, tagRepository,
+                new TransactionTemplate(transactionManager), event -> {
+        }, JSON, mock(UserVersionService.class));
+    }
+
+    @Test
+    void itemsThatDontMapFailOnTheirOwnAndTheImportGoesOn() {
+        BookmarkImportResultDto result = importJson("""
+                [
+                  {"url": "https://a.example/1", "tags": ["dev/java"]},
+                  42,
+                  {"url": "https://b.example", "tags": "dev"},
+                  {"url": " "},
+                  {"url": "http://www.a.example/1/"},
+                  {"url": "https://c.example", "title": "C", "unknown": true}
+                ]
+                """);
+
+        assertThat(result.getImported()).isEqualTo(2);
+        assertThat(result.getErrors()).extracting(BookmarkImportErrorDto::getIndex, BookmarkImportErrorDto::getMessage)
+                .containsExactly(
+                        tuple(1, "bookmark should be a JSON object"),
+                        tuple(2, "bookmark field tags has the wrong type"),
+                        tuple(3, "url should not be null or blank"),
+                        tuple(4, "bookmark already exists with url: http://www.a.example/1/"));
+        assertThat(saved).containsExactly(List.of("https://a.example/1", "https://c.example"));
+        // dev exists, java is created below it and linked
+        verify(tagRepository, times(1)).save(argThatTag("java", 1));
+        verify(bookmarkRepository).insertTagLinks(eq(USER_ID), argThat(links -> links.size() == 1 && links.stream()
+                .allMatch(link -> link.getBookmarkId() == 102 && link.getTagId() == 101)));
+    }
+
+    @Test
+    void brokenJsonStopsTheImportAndKeepsWhatWasRead() {
+        BookmarkImportResultDto result = importJson("""
+                [{"url": "https://a.example"}, {"url": "https://b.example", "title": ]
+                """);
+
+        assertThat(result.getImported()).isEqualTo(1);
+        assertThat(result.getErrors()).singleElement().satisfies(error -> {
+            assertThat(error.getIndex()).isEqualTo(1);
+            assertThat(error.getMessage()).startsWith("malformed input, import stopped");
+        });
+    }
+
+    @Test
+    void knownUrlsAreSkippedAndAFailedChunkIsRetriedItemByItem() {
+        when(bookmarkRepository.findUrlHashes(eq(USER_ID), anyCollection()))
+                .thenReturn(List.of(UrlNormalizer.hash("https://known.example")));
+        doAnswer(invocation -> {
+            List<Bookmark> bookmarks = invocation.getArgument(0);
+            saved.add(bookmarks.stream().map(Bookmark::getUrl).toList());
+            if (bookmarks.size() > 1) {
+                throw new DataIntegrityViolationException("batch entry 1 was aborted");
+            }
+            String url = bookmarks.get(0).getUrl();
+            if (url.contains("taken")) {
+                throw new DataIntegrityViolationException("duplicate key value violates uq_bookmarks_user_id_url_hash",
+                        new SQLException("duplicate key", "23505"));
+            }
+            if (url.contains("nul")) {
+                throw new DataIntegrityViolationException("invalid byte sequence for encoding",
+                        new SQLException("invalid byte sequence", "22021"));
+            }
+            if (url.contains("down")) {
+                throw new IllegalStateException("connection reset");
+            }
+            bookmarks.get(0).setId(ids.incrementAndGet());
+            return bookmarks;
+        }).when(bookmarkRepository).saveAll(anyList());
+
+        BookmarkImportResultDto result = importJson("""
+                [
+                  {"url": "http://www.known.example/"},
+                  {"url": "https://ok.example"},
+                  {"url": "https://taken.example"},
+                  {"url": "https://nul.example"},
+                  {"url": "https://down.example"}
+                ]
+                """);
+
+        assertThat(result.getImported()).isEqualTo(1);
+        assertThat(result.getFailed()).isEqualTo(4);
+        assertThat(result.getErrors()).extracting(BookmarkImportErrorDto::getIndex, BookmarkImportErrorDto::getMessage)
+                .containsExactly(
+                        tuple(0, "bookmark already exists with url: http://www.known.example/"),
+                        tuple(2, "bookmark already exists with url: https://taken.example"),
+                        tuple(3, "bookmark has a value that can't be stored"),
+                        tuple(4, "bookmark could not be saved"));
+        // the chunk once, then each of its items in a transaction of its own
+        assertThat(saved).containsExactly(
+                List.of("https://ok.example", "https://taken.example", "https://nul.example", "https://down.example"),
+                List.of("https://ok.example"),
+                List.of("https://taken.example"),
+                List.of("https://nul.example"),
+                List.of("https://down.example"));
+        verify(transactionManager, times(4)).rollback(any());
+    }
+
+    private BookmarkImportResultDto importJson(String json) {
+        return service.importJson(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), USER_ID);
+    }
+
+    private static Tag argThatTag(String name, Integer parentId) {
+        return argThat(tag -> tag != null && name.equals(tag.getName())
+                && tag.getParent() != null && parentId.equals(tag.getParent().getId()));
+    }
+}
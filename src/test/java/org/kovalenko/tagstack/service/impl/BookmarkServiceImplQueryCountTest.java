@@ -0,0 +1,74 @@
+package org.kovalenko.tagstack.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.kovalenko.tagstack.PostgresTest;
+import org.kovalenko.tagstack.dto.BookmarkImportItemDto;
+import org.kovalenko.tagstack.dto.BookmarkPageDto;
+import org.kovalenko.tagstack.dto.TagResponseDto;
+import org.kovalenko.tagstack.metrics.RequestQueryStats;
+import org.kovalenko.tagstack.service.BookmarkImportService;
+import org.kovalenko.tagstack.service.BookmarkService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Statements prepared for a page of bookmarks, counted by hibernate against PostgreSQL, don't grow with the page
+ * size or with the depth and number of the tags on it
+ */
+class BookmarkServiceImplQueryCountTest extends PostgresTest {
+    private static final int USER_ID = 900_000_002;
+    private static final int BOOKMARKS = 60;
+
+    @Autowired
+    private BookmarkService bookmarkService;
+    @Autowired
+    private BookmarkImportService bookmarkImportService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void getAllPreparesTheSameStatementsForAnyPageSize() throws Exception {
+        // every bookmark has a leaf tag of its own four levels down and one of three shared tags
+        jdbcTemplate.update("DELETE FROM bookmarks WHERE user_id = ?", USER_ID);
+        jdbcTemplate.update("DELETE FROM tags WHERE user_id = ?", USER_ID);
+        List<BookmarkImportItemDto> items = IntStream.range(0, BOOKMARKS)
+                .mapToObj(i -> BookmarkImportItemDto.builder()
+                        .url("https://example.com/" + i)
+                        .title("bookmark " + i)
+                        .tags(List.of("dev/jvm/java/topic" + i, "ops/ci/build" + i % 3))
+                        .build())
+                .toList();
+        byte[] json = objectMapper.writeValueAsBytes(items);
+        assertThat(bookmarkImportService.importJson(new ByteArrayInputStream(json), USER_ID).getImported())
+                .isEqualTo(BOOKMARKS);
+        // loads the tag forest of the user, later pages find it cached
+        bookmarkService.getAll(USER_ID, 1, null);
+
+        Map<Integer, Integer> statements = new LinkedHashMap<>();
+        for (int size : new int[]{1, 10, BOOKMARKS}) {
+            RequestQueryStats stats = RequestQueryStats.start();
+            try {
+                BookmarkPageDto page = bookmarkService.getAll(USER_ID, size, null);
+                assertThat(page.getItems()).hasSize(size).allSatisfy(bookmark -> assertThat(bookmark.getTags())
+                        .extracting(TagResponseDto::getName).containsExactlyInAnyOrder("dev", "ops"));
+            } finally {
+                RequestQueryStats.finish();
+            }
+            statements.put(size, stats.getStatements());
+        }
+
+        // the page and the tag links of its bookmarks
+        assertThat(statements).containsOnly(Map.entry(1, 2), Map.entry(10, 2), Map.entry(BOOKMARKS, 2));
+    }
+}
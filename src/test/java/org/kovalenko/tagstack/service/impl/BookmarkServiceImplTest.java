@@ -0,0 +1,187 @@
+package org.kovalenko.tagstack.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.kovalenko.tagstack.cache.TagForestCache;
+import org.kovalenko.tagstack.dto.BookmarkCompactDto;
+import org.kovalenko.tagstack.dto.BookmarkCompactPageDto;
+import org.kovalenko.tagstack.dto.BookmarkPageDto;
+import org.kovalenko.tagstack.dto.BookmarkRequestDto;
+import org.kovalenko.tagstack.dto.BookmarkResponseDto;
+import org.kovalenko.tagstack.dto.BookmarkTagLinkDto;
+import org.kovalenko.tagstack.dto.TagCompactDto;
+import org.kovalenko.tagstack.dto.TagNodeDto;
+import org.kovalenko.tagstack.dto.TagResponseDto;
+import org.kovalenko.tagstack.entity.Bookmark;
+import org.kovalenko.tagstack.entity.Tag;
+import org.kovalenko.tagstack.repository.BookmarkRepository;
+import org.kovalenko.tagstack.repository.TagRepository;
+import org.kovalenko.tagstack.service.UserVersionService;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class BookmarkServiceImplTest {
+    private static final Integer USER_ID = 1;
+
+    private BookmarkRepository bookmarkRepository;
+    private TagRepository tagRepository;
+    private UserVersionService userVersionService;
+    private BookmarkServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        bookmarkRepository = mock(BookmarkRepository.class);
+        tagRepository = mock(TagRepository.class);
+        TagForestCache tagForestCache = new TagForestCache(tagRepository, new SimpleMeterRegistry(), 100,
+                Duration.ofMinutes(1), Duration.ofMinutes(1));
+        userVersionService = mock(UserVersionService.class);
+        service = new BookmarkServiceImpl(bookmarkRepository, tagRepository, mock(EntityManager.class), tagForestCache,
+                new SimpleMeterRegistry(), userVersionService, event -> {
+        });
+
+        // dev -> java -> spring, plus a second root
+        when(tagRepository.findTagNodesByUserId(USER_ID)).thenReturn(List.of(
+                new TagNodeDto(1, null, "dev", "/1/"),
+                new TagNodeDto(2, 1, "java", "/1/2/"),
+                new TagNodeDto(3, 2, "spring", "/1/2/3/"),
+                new TagNodeDto(4, null, "news", "/4/")));
+    }
+
+    /**
+     * Query-count regression: the number of repository calls must not grow with the page size
+     */
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 500})
+    void getAllIssuesConstantNumberOfQueries(int size) {
+        List<Bookmark> bookmarks = new ArrayList<>();
+        List<BookmarkTagLinkDto> links = new ArrayList<>();
+        for (int i = 1; i <= size; i++) {
+            bookmarks.add(bookmark(i));
+            links.add(new BookmarkTagLinkDto(i, 3));
+            links.add(new BookmarkTagLinkDto(i, 4));
+        }
+        when(bookmarkRepository.findFirstPage(eq(USER_ID), any())).thenReturn(bookmarks);
+        when(bookmarkRepository.findTagLinks(eq(USER_ID), anyCollection())).thenReturn(links);
+
+        BookmarkPageDto page = service.getAll(USER_ID, 1000, null);
+
+        assertThat(page.getItems()).hasSize(size);
+        verify(bookmarkRepository, times(1)).findFirstPage(eq(USER_ID), any());
+        verify(bookmarkRepository, times(1)).findTagLinks(eq(USER_ID), anyCollection());
+        verify(tagRepository, times(1)).findTagNodesByUserId(USER_ID);
+        verifyNoMoreInteractions(bookmarkRepository, tagRepository);
+    }
+
+    @Test
+    void getAllBuildsRootToTagPaths() {
+        when(bookmarkRepository.findFirstPage(eq(USER_ID), any())).thenReturn(List.of(bookmark(1)));
+        when(bookmarkRepository.findTagLinks(eq(USER_ID), anyCollection()))
+                .thenReturn(List.of(new BookmarkTagLinkDto(1, 3), new BookmarkTagLinkDto(1, 4)));
+
+        BookmarkResponseDto dto = service.getAll(USER_ID, 10, null).getItems().get(0);
+
+        assertThat(dto.getTags()).extracting(TagResponseDto::getName).containsExactlyInAnyOrder("dev", "news");
+        TagResponseDto dev = dto.getTags().stream().filter(tag -> tag.getName().equals("dev")).findFirst().orElseThrow();
+        assertThat(dev.getChildren()).singleElement().satisfies(java -> {
+            assertThat(java.getName()).isEqualTo("java");
+            assertThat(java.getChildren()).singleElement()
+                    .satisfies(spring -> assertThat(spring.getName()).isEqualTo("spring"));
+        });
+    }
+
+    @Test
+    void compactPageSendsEachTagOnceAndOnlyTheRequestedFields() {
+        when(bookmarkRepository.findFirstCompactPage(eq(USER_ID), any())).thenReturn(List.of(
+                new BookmarkCompactDto(1, "https://example.com/1", "one", null, null, null),
+                new BookmarkCompactDto(2, "https://example.com/2", "two", null, null, null)));
+        when(bookmarkRepository.findTagLinks(eq(USER_ID), anyCollection())).thenReturn(List.of(
+                new BookmarkTagLinkDto(1, 3), new BookmarkTagLinkDto(1, 4), new BookmarkTagLinkDto(2, 3)));
+
+        BookmarkCompactPageDto page = service.getAllCompact(USER_ID, 10, null, "url,tags");
+
+        assertThat(page.getItems()).extracting(BookmarkCompactDto::getTagIds)
+                .containsExactly(List.of(3, 4), List.of(3));
+        assertThat(page.getItems()).extracting(BookmarkCompactDto::getTitle).containsOnlyNulls();
+        // spring plus its ancestors java and dev, and news
+        assertThat(page.getTags()).extracting(TagCompactDto::getId).containsExactly(1, 2, 3, 4);
+        assertThat(page.getTags()).extracting(TagCompactDto::getParentId).containsExactly(null, 1, 2, null);
+
+        service.getAllCompact(USER_ID, 10, null, "id,title");
+        verify(bookmarkRepository, times(1)).findTagLinks(eq(USER_ID), anyCollection());
+        assertThatThrownBy(() -> service.getAllCompact(USER_ID, 10, null, "id,secret"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void bulkDeleteIsOneStatementAndBumpsTheVersionOnlyWhenSomethingWasDeleted() {
+        when(bookmarkRepository.deleteAllByIdInAndUserId(List.of(1, 2, 3), USER_ID)).thenReturn(2);
+        when(bookmarkRepository.deleteAllByIdInAndUserId(List.of(4), USER_ID)).thenReturn(0);
+
+        assertThat(service.deleteByIds(List.of(1, 2, 3), USER_ID)).isEqualTo(2);
+        assertThatThrownBy(() -> service.deleteById(4, USER_ID)).isInstanceOf(IllegalArgumentException.class);
+
+        verify(userVersionService, times(1)).bump(USER_ID);
+        verify(bookmarkRepository, never()).findByIdAndUserId(any(), any());
+    }
+
+    @Test
+    void createResolvesAllTagsInOneQueryAndReportsEveryMissingId() {
+        when(tagRepository.findAllByIdInAndUserId(anyCollection(), eq(USER_ID)))
+                .thenReturn(List.of(Tag.builder().id(1).userId(USER_ID).build()));
+        BookmarkRequestDto dto = new BookmarkRequestDto();
+        dto.setUrl("https://example.com");
+        dto.setTagIds(Set.of(1, 7, 5));
+
+        assertThatThrownBy(() -> service.create(dto, USER_ID))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("[5, 7]");
+        verify(tagRepository, times(1)).findAllByIdInAndUserId(anyCollection(), eq(USER_ID));
+        verify(tagRepository, never()).findById(any());
+    }
+
+    @Test
+    void updateWritesOnlyTheChangedTagLinks() {
+        when(bookmarkRepository.findByIdAndUserId(1, USER_ID)).thenReturn(Optional.of(bookmark(1)));
+        when(bookmarkRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(tagRepository.findAllByIdInAndUserId(anyCollection(), eq(USER_ID))).thenReturn(List.of(
+                Tag.builder().id(2).userId(USER_ID).build(),
+                Tag.builder().id(3).userId(USER_ID).build()));
+        when(bookmarkRepository.findTagLinks(eq(USER_ID), anyCollection()))
+                .thenReturn(List.of(new BookmarkTagLinkDto(1, 1), new BookmarkTagLinkDto(1, 2)));
+        BookmarkRequestDto dto = new BookmarkRequestDto();
+        dto.setUrl("https://example.com/1");
+        dto.setTagIds(Set.of(2, 3));
+
+        service.update(dto, 1, USER_ID);
+
+        verify(bookmarkRepository).deleteTagLinks(USER_ID, 1, Set.of(1));
+        verify(bookmarkRepository).insertTagLinks(eq(USER_ID), argThat(links -> links.size() == 1
+                && links.iterator().next().getBookmarkId() == 1 && links.iterator().next().getTagId() == 3));
+    }
+
+    private Bookmark bookmark(int id) {
+        return Bookmark.builder()
+                .id(id)
+                .userId(USER_ID)
+                .url("https://example.com/" + id)
+                .createdAt(LocalDateTime.of(2024, 1, 1, 0, 0).plusMinutes(id))
+                .build();
+    }
+}
@@ -0,0 +1,45 @@
+package org.kovalenko.tagstack.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.kovalenko.tagstack.dto.BookmarkImportItemDto;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NetscapeBookmarkParserTest {
+
+    @Test
+    void foldersBecomeTagPaths() throws IOException {
+        String html = """
+                <!DOCTYPE NETSCAPE-Bookmark-file-1>
+                <TITLE>Bookmarks</TITLE>
+                <DL><p>
+                    <DT><H3 ADD_DATE="1">Dev</H3>
+                    <DL><p>
+                        <DT><H3>Java</H3>
+                        <DL><p>
+                            <DT><A HREF="https://spring.io/?a=1&amp;b=2" TAGS="framework,web">Spring</A>
+                            <DD>Spring &quot;home&quot;
+                        </DL><p>
+                        <DT><A HREF="https://go.dev">Go</A>
+                    </DL><p>
+                    <DT><A HREF="https://news.ycombinator.com">HN</A>
+                </DL><p>
+                """;
+        List<BookmarkImportItemDto> items = new ArrayList<>();
+
+        NetscapeBookmarkParser.parse(new StringReader(html), items::add);
+
+        assertThat(items).extracting(BookmarkImportItemDto::getUrl)
+                .containsExactly("https://spring.io/?a=1&b=2", "https://go.dev", "https://news.ycombinator.com");
+        assertThat(items.get(0).getTitle()).isEqualTo("Spring");
+        assertThat(items.get(0).getDescription()).isEqualTo("Spring \"home\"");
+        assertThat(items.get(0).getTags()).containsExactly("Dev/Java", "framework", "web");
+        assertThat(items.get(1).getTags()).containsExactly("Dev");
+        assertThat(items.get(2).getTags()).isEmpty();
+    }
+}
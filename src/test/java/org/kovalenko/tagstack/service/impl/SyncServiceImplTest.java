@@ -0,0 +1,65 @@
+package org.kovalenko.tagstack.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.kovalenko.tagstack.dto.BookmarkResponseDto;
+import org.kovalenko.tagstack.dto.SyncDto;
+import org.kovalenko.tagstack.dto.TagNodeDto;
+import org.kovalenko.tagstack.entity.ChangeLogEntry;
+import org.kovalenko.tagstack.repository.ChangeLogRepository;
+import org.kovalenko.tagstack.repository.TagRepository;
+import org.kovalenko.tagstack.service.BookmarkService;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class SyncServiceImplTest {
+    private static final Integer USER_ID = 1;
+
+    private final ChangeLogRepository changeLogRepository = mock(ChangeLogRepository.class);
+    private final BookmarkService bookmarkService = mock(BookmarkService.class);
+    private final TagRepository tagRepository = mock(TagRepository.class);
+    private final SyncServiceImpl service = new SyncServiceImpl(changeLogRepository, bookmarkService, tagRepository);
+
+    @Test
+    void collapsesChangesToTheLatestOperationAndContinuesFromTheToken() {
+        when(changeLogRepository.findChangesAfter(USER_ID, 0, 0, 11)).thenReturn(List.of(
+                entry(1, 100, ChangeLogEntry.BOOKMARK, 7, "C"),
+                entry(2, 100, ChangeLogEntry.TAG, 3, "C"),
+                entry(3, 101, ChangeLogEntry.BOOKMARK, 7, "U"),
+                entry(4, 101, ChangeLogEntry.BOOKMARK, 8, "D"),
+                entry(5, 102, ChangeLogEntry.BOOKMARK, 9, "U")));
+        // bookmark 9 was deleted after the page was read
+        when(bookmarkService.getAllByIds(List.of(7, 9), USER_ID))
+                .thenReturn(List.of(BookmarkResponseDto.builder().id(7).build()));
+        when(tagRepository.findTagNodesByUserIdAndIdIn(USER_ID, List.of(3)))
+                .thenReturn(List.of(new TagNodeDto(3, null, "dev", "/3/")));
+
+        SyncDto sync = service.getChanges(USER_ID, null, 10);
+
+        assertThat(sync.getBookmarks()).extracting(BookmarkResponseDto::getId).containsExactly(7);
+        assertThat(sync.getDeletedBookmarkIds()).containsExactly(8, 9);
+        assertThat(sync.getTags()).extracting(TagNodeDto::getId).containsExactly(3);
+        assertThat(sync.getDeletedTagIds()).isEmpty();
+        assertThat(sync.isHasMore()).isFalse();
+
+        when(changeLogRepository.findChangesAfter(USER_ID, 102, 5, 11)).thenReturn(List.of());
+        SyncDto next = service.getChanges(USER_ID, sync.getNextToken(), 10);
+
+        assertThat(next.getBookmarks()).isEmpty();
+        assertThat(next.getNextToken()).isEqualTo(sync.getNextToken());
+        verify(changeLogRepository).findChangesAfter(USER_ID, 102, 5, 11);
+    }
+
+    private ChangeLogEntry entry(long id, long txId, String type, int entityId, String operation) {
+        return ChangeLogEntry.builder()
+                .id(id)
+                .txId(txId)
+                .userId(USER_ID)
+                .entityType(type)
+                .entityId(entityId)
+                .operation(operation)
+                .build();
+    }
+}
@@ -0,0 +1,158 @@
+package org.kovalenko.tagstack.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.kovalenko.tagstack.cache.TagForestCache;
+import org.kovalenko.tagstack.cache.TagUsageCache;
+import org.kovalenko.tagstack.dto.TagBatchResultDto;
+import org.kovalenko.tagstack.dto.TagNodeDto;
+import org.kovalenko.tagstack.dto.TagRequestDto;
+import org.kovalenko.tagstack.dto.TagResponseDto;
+import org.kovalenko.tagstack.entity.Tag;
+import org.kovalenko.tagstack.event.TagsChangedEvent;
+import org.kovalenko.tagstack.repository.TagRepository;
+import org.kovalenko.tagstack.service.UserVersionService;
+import org.mockito.InOrder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+class TagServiceImplTest {
+    private static final Integer USER_ID = 1;
+
+    // dev -> java -> spring, plus a second root
+    private static final List<TagNodeDto> NODES = List.of(
+            new TagNodeDto(1, null, "dev", "/1/"),
+            new TagNodeDto(2, 1, "java", "/1/2/"),
+            new TagNodeDto(3, 2, "spring", "/1/2/3/"),
+            new TagNodeDto(4, null, "news", "/4/"));
+
+    private TagRepository repository;
+    private UserVersionService userVersionService;
+    private final List<Object> events = new ArrayList<>();
+    private TagServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(TagRepository.class);
+        when(repository.findTagNodesByUserIdAndIdIn(eq(USER_ID), anyCollection())).thenAnswer(invocation -> {
+            Collection<Integer> ids = invocation.getArgument(1);
+            return NODES.stream().filter(node -> ids.contains(node.getId())).toList();
+        });
+        userVersionService = mock(UserVersionService.class);
+        TagForestCache tagForestCache = new TagForestCache(repository, new SimpleMeterRegistry(), 100,
+                Duration.ofMinutes(1), Duration.ofMinutes(1));
+        service = new TagServiceImpl(repository, tagForestCache, events::add, userVersionService,
+                mock(TagUsageCache.class));
+    }
+
+    @Test
+    void moveRewritesAllSubtreesInOneStatementAndSkipsTagsAlreadyThere() {
+        when(repository.moveSubtrees(eq(USER_ID), isNull(), anyList(), anyList())).thenReturn(2);
+
+        TagBatchResultDto result = service.move(List.of(2, 3, 4), null, USER_ID);
+        assertThat(result.getTags()).isEqualTo(2);
+        // news already is a root; spring below the moved java follows its own entry
+        verify(repository).moveSubtrees(USER_ID, null, List.of("/1/2/", "/1/2/3/"), List.of("/2/", "/3/"));
+        assertThat(events).singleElement().satisfies(event -> assertThat(((TagsChangedEvent) event).upserted())
+                .extracting(TagNodeDto::getId).containsExactly(2, 3));
+
+        assertThatThrownBy(() -> service.move(List.of(1), 3, USER_ID))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("descendant");
+        assertThatThrownBy(() -> service.move(List.of(1, 8, 9), null, USER_ID))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("[8, 9]");
+        verify(userVersionService, times(1)).bump(USER_ID);
+    }
+
+    @Test
+    void mergeMovesLinksAndChildrenToTheTargetAndRemovesTheTag() {
+        when(repository.findSubtreeNodes(USER_ID, "/1/2/")).thenReturn(NODES.subList(1, 3));
+        when(repository.deleteAllTagLinks(USER_ID, 2)).thenReturn(5);
+        when(repository.rewriteSubtreePaths(USER_ID, "/1/2/", "/4/")).thenReturn(1);
+
+        TagBatchResultDto result = service.merge(2, 4, USER_ID);
+
+        assertThat(result.getTags()).isEqualTo(2);
+        assertThat(result.getBookmarks()).isEqualTo(5);
+        InOrder order = inOrder(repository);
+        order.verify(repository).copyTagLinks(USER_ID, 2, 4);
+        order.verify(repository).deleteAllTagLinks(USER_ID, 2);
+        order.verify(repository).reparentChildren(USER_ID, 2, 4);
+        order.verify(repository).deleteTag(USER_ID, 2);
+        order.verify(repository).rewriteSubtreePaths(USER_ID, "/1/2/", "/4/");
+        TagsChangedEvent event = (TagsChangedEvent) events.get(0);
+        assertThat(event.removedSubtrees()).containsExactly(2);
+        assertThat(event.upserted()).singleElement().satisfies(spring -> {
+            assertThat(spring.getParentId()).isEqualTo(4);
+            assertThat(spring.getPath()).isEqualTo("/4/3/");
+        });
+
+        assertThatThrownBy(() -> service.merge(1, 3, USER_ID))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("descendant");
+        verify(repository, never()).copyTagLinks(eq(USER_ID), eq(1), anyInt());
+        verify(repository, never()).deleteSubtree(any(), any());
+    }
+
+    @Test
+    void updateMovesTheSubtreeAndAnswersWithItReadInOneQuery() {
+        Tag dev = Tag.builder().id(1).userId(USER_ID).name("dev").path("/1/").build();
+        Tag java = Tag.builder().id(2).userId(USER_ID).name("java").parent(dev).path("/1/2/").build();
+        Tag news = Tag.builder().id(4).userId(USER_ID).name("news").path("/4/").build();
+        when(repository.findByIdAndUserId(2, USER_ID)).thenReturn(Optional.of(java));
+        when(repository.findByIdAndUserId(4, USER_ID)).thenReturn(Optional.of(news));
+        when(repository.save(any(Tag.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(repository.findSubtreeNodes(USER_ID, "/4/2/")).thenReturn(List.of(
+                new TagNodeDto(2, 4, "jvm", "/4/2/"),
+                new TagNodeDto(3, 2, "spring", "/4/2/3/")));
+
+        TagResponseDto result = service.update(new TagRequestDto("JVM", 4), 2, USER_ID);
+
+        assertThat(result.getId()).isEqualTo(2);
+        assertThat(result.getName()).isEqualTo("jvm");
+        assertThat(result.getChildren()).singleElement().satisfies(spring -> {
+            assertThat(spring.getId()).isEqualTo(3);
+            assertThat(spring.getName()).isEqualTo("spring");
+            assertThat(spring.getChildren()).isEmpty();
+        });
+        assertThat(java.getParent()).isSameAs(news);
+        assertThat(java.getPath()).isEqualTo("/4/2/");
+        verify(repository).rewriteSubtreePaths(USER_ID, "/1/2/", "/4/2/");
+        verify(userVersionService).bump(USER_ID);
+        assertThat(events).singleElement().satisfies(event -> assertThat(((TagsChangedEvent) event).upserted())
+                .singleElement().satisfies(node -> assertThat(node.getPath()).isEqualTo("/4/2/")));
+    }
+
+    @Test
+    void deleteOfAMissingTagFailsAndChangesNothing() {
+        when(repository.deleteSubtree(USER_ID, 9)).thenReturn(0);
+        when(repository.deleteSubtree(USER_ID, 2)).thenReturn(2);
+
+        assertThatThrownBy(() -> service.delete(9, USER_ID))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("not found");
+        verify(userVersionService, never()).bump(any());
+        assertThat(events).isEmpty();
+
+        service.delete(2, USER_ID);
+        verify(userVersionService).bump(USER_ID);
+        assertThat(events).singleElement().satisfies(event ->
+                assertThat(((TagsChangedEvent) event).removedSubtrees()).containsExactly(2));
+    }
+}
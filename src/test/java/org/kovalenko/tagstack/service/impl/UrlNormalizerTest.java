@@ -0,0 +1,47 @@
+package org.kovalenko.tagstack.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UrlNormalizerTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "https://example.com/docs?a=1&b=2",
+            "http://example.com/docs?a=1&b=2",
+            "  HTTPS://WWW.Example.COM:443/docs/?b=2&a=1  ",
+            "https://example.com/guide/../docs?utm_source=mail&a=1&utm_medium=x&b=2",
+            "https://example.com/docs?a=1&fbclid=abc&b=2#section",
+    })
+    void variantsOfTheSamePageShareTheCanonicalForm(String url) {
+        assertThat(UrlNormalizer.normalize(url)).isEqualTo("https://example.com/docs?a=1&b=2");
+        assertThat(UrlNormalizer.hash(url)).isEqualTo(UrlNormalizer.hash("https://example.com/docs?a=1&b=2"));
+    }
+
+    @Test
+    void differentPagesStayDifferent() {
+        assertThat(UrlNormalizer.normalize("https://example.com:8443/Docs")).isEqualTo("https://example.com:8443/Docs");
+        assertThat(UrlNormalizer.normalize("https://example.com/#/settings")).isEqualTo("https://example.com#/settings");
+        assertThat(UrlNormalizer.hash("https://example.com/docs?a=1"))
+                .isNotEqualTo(UrlNormalizer.hash("https://example.com/docs?a=2"));
+    }
+
+    @Test
+    void onlyTheDefaultPortOfTheSchemeIsDropped() {
+        assertThat(UrlNormalizer.normalize("http://example.com:80/docs")).isEqualTo("https://example.com/docs");
+        assertThat(UrlNormalizer.normalize("https://example.com:443/docs")).isEqualTo("https://example.com/docs");
+        assertThat(UrlNormalizer.normalize("http://example.com:443/docs")).isEqualTo("https://example.com:443/docs");
+        assertThat(UrlNormalizer.normalize("https://example.com:80/docs")).isEqualTo("https://example.com:80/docs");
+        assertThat(UrlNormalizer.hash("http://example.com:443/docs"))
+                .isNotEqualTo(UrlNormalizer.hash("https://example.com/docs"));
+    }
+
+    @Test
+    void otherUrlsAreOnlyTrimmed() {
+        assertThat(UrlNormalizer.normalize(" mailto:Someone@Example.com ")).isEqualTo("mailto:Someone@Example.com");
+        assertThat(UrlNormalizer.normalize("not a url")).isEqualTo("not a url");
+    }
+}
@@ -0,0 +1,45 @@
+package org.kovalenko.tagstack.web;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdmissionControlFilterTest {
+    private final AdmissionControlFilter filter =
+            new AdmissionControlFilter(1, Duration.ofMillis(10), new SimpleMeterRegistry());
+
+    @Test
+    void rejectsRequestsBeyondTheLimitAndReleasesAfterwards() throws Exception {
+        MockHttpServletResponse inner = new MockHttpServletResponse();
+
+        // the second request arrives while the first one still holds the only permit
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/v0/bookmarks"), new MockHttpServletResponse(),
+                (request, response) -> filter.doFilter(
+                        new MockHttpServletRequest("GET", "/api/v0/tags"), inner, (r, s) -> {
+                        }));
+        assertThat(inner.getStatus()).isEqualTo(503);
+        assertThat(inner.getHeader("Retry-After")).isEqualTo("1");
+
+        MockHttpServletResponse next = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/v0/tags"), next, (r, s) -> {
+        });
+        assertThat(next.getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void ignoresRequestsOutsideTheApi() throws Exception {
+        MockHttpServletResponse inner = new MockHttpServletResponse();
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/v0/bookmarks"), new MockHttpServletResponse(),
+                (request, response) -> filter.doFilter(
+                        new MockHttpServletRequest("GET", "/actuator/health"), inner, (r, s) -> {
+                        }));
+
+        assertThat(inner.getStatus()).isEqualTo(200);
+    }
+}